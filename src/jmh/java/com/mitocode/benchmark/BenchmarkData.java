@@ -0,0 +1,69 @@
+package com.mitocode.benchmark;
+
+import com.mitocode.dto.ClientDTO;
+import com.mitocode.dto.DishDTO;
+import com.mitocode.dto.InvoiceDTO;
+import com.mitocode.dto.InvoiceDetailDTO;
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import com.mitocode.model.InvoiceDetail;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+//Datos deterministas para que los resultados sean comparables entre ejecuciones
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static Client client() {
+        return new Client("65b7f3a1c2d4e5f6a7b8c9d0", "Jaime", "Medina", LocalDate.of(1990, 5, 17), "https://res.cloudinary.com/demo/c1.png");
+    }
+
+    static ClientDTO clientDTO() {
+        return new ClientDTO("65b7f3a1c2d4e5f6a7b8c9d0", "Jaime", "Medina", LocalDate.of(1990, 5, 17), "https://res.cloudinary.com/demo/c1.png");
+    }
+
+    static Dish dish(int i) {
+        return new Dish(String.format("65b7f3a1c2d4e5f6%08x", i), "Plato " + i, 10.0 + i % 50, i % 7 != 0);
+    }
+
+    static DishDTO dishDTO(int i) {
+        return new DishDTO(String.format("65b7f3a1c2d4e5f6%08x", i), "Plato " + i, 10.0 + i % 50, i % 7 != 0);
+    }
+
+    static List<Dish> dishes(int size) {
+        List<Dish> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(dish(i));
+        }
+        return list;
+    }
+
+    static List<DishDTO> dishDTOs(int size) {
+        List<DishDTO> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(dishDTO(i));
+        }
+        return list;
+    }
+
+    static Invoice invoice(int items) {
+        List<InvoiceDetail> details = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            details.add(new InvoiceDetail(1 + i % 3, dish(i), dish(i).getPrice()));
+        }
+        return new Invoice("65b7f3a1c2d4e5f6a7b8ffff", "Mesa 4", client(), details);
+    }
+
+    static InvoiceDTO invoiceDTO(int items) {
+        List<InvoiceDetailDTO> details = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            details.add(new InvoiceDetailDTO(1 + i % 3, dishDTO(i), dishDTO(i).getPriceDish()));
+        }
+        return new InvoiceDTO("65b7f3a1c2d4e5f6a7b8ffff", "Mesa 4", clientDTO(), details);
+    }
+}
@@ -0,0 +1,49 @@
+package com.mitocode.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mitocode.dto.DishDTO;
+import com.mitocode.dto.InvoiceDTO;
+import com.mitocode.pagination.PageSupport;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+//Serializacion de las respuestas mas pesadas con la misma configuracion base de Jackson que Spring Boot
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonBenchmark {
+
+    @Param({"10", "100"})
+    private int size;
+
+    private ObjectWriter pageWriter;
+    private ObjectWriter invoiceWriter;
+
+    private PageSupport<DishDTO> page;
+    private InvoiceDTO invoice;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        pageWriter = objectMapper.writerFor(PageSupport.class);
+        invoiceWriter = objectMapper.writerFor(InvoiceDTO.class);
+
+        page = new PageSupport<>(BenchmarkData.dishDTOs(size), 0, size, size * 20L);
+        invoice = BenchmarkData.invoiceDTO(size);
+    }
+
+    @Benchmark
+    public byte[] pageSupport() throws Exception {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] invoiceDTO() throws Exception {
+        return invoiceWriter.writeValueAsBytes(invoice);
+    }
+}
@@ -0,0 +1,119 @@
+package com.mitocode.benchmark;
+
+import com.mitocode.config.MapperConfig;
+import com.mitocode.dto.ClientDTO;
+import com.mitocode.dto.DishDTO;
+import com.mitocode.dto.InvoiceDTO;
+import com.mitocode.mapper.ClientMapper;
+import com.mitocode.mapper.DishMapper;
+import com.mitocode.mapper.InvoiceMapper;
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//ModelMapper de MapperConfig frente a los mappers generados que usan los controladores
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MappingBenchmark {
+
+    @Param({"1", "20"})
+    private int items;
+
+    private ModelMapper defaultMapper;
+    private ModelMapper clientModelMapper;
+    private ModelMapper invoiceModelMapper;
+
+    private final DishMapper dishMapper = Mappers.getMapper(DishMapper.class);
+    private final ClientMapper clientMapper = Mappers.getMapper(ClientMapper.class);
+    private final InvoiceMapper invoiceMapper = Mappers.getMapper(InvoiceMapper.class);
+
+    private Dish dish;
+    private DishDTO dishDTO;
+    private Client client;
+    private ClientDTO clientDTO;
+    private Invoice invoice;
+    private InvoiceDTO invoiceDTO;
+
+    @Setup
+    public void setup() {
+        MapperConfig config = new MapperConfig();
+        defaultMapper = config.defaultMapper();
+        clientModelMapper = config.clientMapper();
+        invoiceModelMapper = config.invoiceMapper();
+
+        dish = BenchmarkData.dish(1);
+        dishDTO = BenchmarkData.dishDTO(1);
+        client = BenchmarkData.client();
+        clientDTO = BenchmarkData.clientDTO();
+        invoice = BenchmarkData.invoice(items);
+        invoiceDTO = BenchmarkData.invoiceDTO(items);
+    }
+
+    @Benchmark
+    public DishDTO dishToDtoModelMapper() {
+        return defaultMapper.map(dish, DishDTO.class);
+    }
+
+    @Benchmark
+    public DishDTO dishToDtoGenerated() {
+        return dishMapper.toDto(dish);
+    }
+
+    @Benchmark
+    public Dish dishToDocumentModelMapper() {
+        return defaultMapper.map(dishDTO, Dish.class);
+    }
+
+    @Benchmark
+    public Dish dishToDocumentGenerated() {
+        return dishMapper.toDocument(dishDTO);
+    }
+
+    @Benchmark
+    public ClientDTO clientToDtoModelMapper() {
+        return clientModelMapper.map(client, ClientDTO.class);
+    }
+
+    @Benchmark
+    public ClientDTO clientToDtoGenerated() {
+        return clientMapper.toDto(client);
+    }
+
+    @Benchmark
+    public Client clientToDocumentModelMapper() {
+        return clientModelMapper.map(clientDTO, Client.class);
+    }
+
+    @Benchmark
+    public Client clientToDocumentGenerated() {
+        return clientMapper.toDocument(clientDTO);
+    }
+
+    @Benchmark
+    public InvoiceDTO invoiceToDtoModelMapper() {
+        return invoiceModelMapper.map(invoice, InvoiceDTO.class);
+    }
+
+    @Benchmark
+    public InvoiceDTO invoiceToDtoGenerated() {
+        return invoiceMapper.toDto(invoice);
+    }
+
+    @Benchmark
+    public Invoice invoiceToDocumentModelMapper() {
+        return invoiceModelMapper.map(invoiceDTO, Invoice.class);
+    }
+
+    @Benchmark
+    public Invoice invoiceToDocumentGenerated() {
+        return invoiceMapper.toDocument(invoiceDTO);
+    }
+}
@@ -0,0 +1,72 @@
+package com.mitocode.benchmark;
+
+import com.mitocode.model.Dish;
+import com.mitocode.pagination.PageSupport;
+import com.mitocode.repo.IDishRepo;
+import com.mitocode.service.impl.DishServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//CRUDImpl.getPage sobre un repositorio en memoria: mide el costo propio del servicio
+//(zip pagina + conteo, collectList) sin la latencia de Mongo, para distintos tamaños de coleccion.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PagingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int collectionSize;
+
+    @Param({"10", "100"})
+    private int pageSize;
+
+    private DishServiceImpl service;
+    private Pageable firstPage;
+    private Pageable lastPage;
+
+    @Setup
+    public void setup() {
+        List<Dish> collection = BenchmarkData.dishes(collectionSize);
+        service = new DishServiceImpl(inMemoryRepo(collection));
+        //incluye el costo del timer crud.operations, igual que en produccion
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        firstPage = PageRequest.of(0, pageSize);
+        lastPage = PageRequest.of((collectionSize - 1) / pageSize, pageSize);
+    }
+
+    @Benchmark
+    public PageSupport<Dish> firstPage() {
+        return service.getPage(firstPage).block();
+    }
+
+    @Benchmark
+    public PageSupport<Dish> lastPage() {
+        return service.getPage(lastPage).block();
+    }
+
+    //solo findAllBy y count, que es lo que usa getPage con app.pagination.estimated-count=false
+    private static IDishRepo inMemoryRepo(List<Dish> collection) {
+        return (IDishRepo) Proxy.newProxyInstance(IDishRepo.class.getClassLoader(), new Class<?>[]{IDishRepo.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAllBy" -> {
+                        Pageable pageable = (Pageable) args[0];
+                        int from = (int) Math.min(pageable.getOffset(), collection.size());
+                        int to = Math.min(from + pageable.getPageSize(), collection.size());
+                        yield Flux.fromIterable(collection.subList(from, to));
+                    }
+                    case "count" -> Mono.just((long) collection.size());
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,70 @@
+package com.mitocode.benchmark;
+
+import com.mitocode.model.Invoice;
+import com.mitocode.report.ReportTemplateCache;
+import com.mitocode.service.impl.InvoiceServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+//generatePdfReport separado por fases: compilar la plantilla, fill y export a PDF
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ReportBenchmark {
+
+    @Param({"5", "50", "500"})
+    private int items;
+
+    private InvoiceServiceImpl service;
+    private Invoice invoice;
+    private JasperPrint filled;
+
+    @Setup
+    public void setup() throws Exception {
+        //reload-check-ms = 0: la plantilla se compila una vez, igual que en produccion
+        ReportTemplateCache templateCache = new ReportTemplateCache(new DefaultResourceLoader(), "classpath:facturas.jrxml", 0);
+        templateCache.afterPropertiesSet();
+
+        //los repositorios y el executor no participan en la generacion sincrona del PDF
+        service = new InvoiceServiceImpl(null, null, templateCache, null);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        invoice = BenchmarkData.invoice(items);
+        filled = service.fillReport(invoice);
+    }
+
+    @Benchmark
+    public JasperReport compile() throws Exception {
+        try (InputStream in = new ClassPathResource("facturas.jrxml").getInputStream()) {
+            return JasperCompileManager.compileReport(in);
+        }
+    }
+
+    @Benchmark
+    public JasperPrint fill() throws Exception {
+        return service.fillReport(invoice);
+    }
+
+    @Benchmark
+    public byte[] export() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportPdf(filled, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] generatePdfReport() throws Exception {
+        return service.generatePdfReport(invoice);
+    }
+}
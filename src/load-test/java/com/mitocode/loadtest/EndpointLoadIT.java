@@ -0,0 +1,141 @@
+package com.mitocode.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitocode.loadtest.LoadGenerator.LoadResult;
+import com.mitocode.loadtest.LoadTestDataSeeder.SeededData;
+import com.mitocode.loadtest.LoadTestDataSeeder.Volumes;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Carga sobre la aplicacion completa con un mongod embebido (se descarga una vez y queda en ~/.embedmongo).
+ * Todo es configurable con -Dloadtest.*, por ejemplo:
+ * mvn -Pload-test verify -Dloadtest.invoices=50000 -Dloadtest.rate.report=20 -Dloadtest.duration-seconds=60
+ * El resumen sale por consola y en target/load-test/results.json.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class EndpointLoadIT {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${loadtest.clients:1000}")
+    private int clients;
+
+    @Value("${loadtest.dishes:500}")
+    private int dishes;
+
+    @Value("${loadtest.invoices:5000}")
+    private int invoices;
+
+    @Value("${loadtest.items-per-invoice:5}")
+    private int itemsPerInvoice;
+
+    @Value("${loadtest.menus:20}")
+    private int menus;
+
+    @Value("${loadtest.roles:3}")
+    private int roles;
+
+    @Value("${loadtest.users:100}")
+    private int users;
+
+    @Value("${loadtest.duration-seconds:30}")
+    private int durationSeconds;
+
+    @Value("${loadtest.max-in-flight:256}")
+    private int maxInFlight;
+
+    @Value("${loadtest.rate.invoices:5}")
+    private double invoicesRate;
+
+    @Value("${loadtest.rate.pageable:200}")
+    private double pageableRate;
+
+    @Value("${loadtest.rate.report:10}")
+    private double reportRate;
+
+    @Value("${loadtest.page-size:10}")
+    private int pageSize;
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        mongod = Mongod.instance().start(Version.Main.V6_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        registry.add("spring.data.mongodb.uri", () -> "mongodb://" + address.getHost() + ":" + address.getPort() + "/loadtest");
+        //mongod standalone: sin change streams; con mode=polling reconciliar toda la coleccion sesgaria la medicion
+        registry.add("app.rollups.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @Test
+    void endpointsUnderFixedArrivalRate() throws Exception {
+        SeededData seeded = new LoadTestDataSeeder(mongoTemplate)
+                .seed(new Volumes(clients, dishes, invoices, itemsPerInvoice, menus, roles, users))
+                .block();
+        List<String> invoiceIds = seeded.invoiceIds();
+        int pages = Math.max(1, dishes / pageSize);
+
+        WebClient client = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .build();
+        LoadGenerator generator = new LoadGenerator(Duration.ofSeconds(durationSeconds), maxInFlight);
+
+        //un endpoint a la vez para que las cifras de cada uno no se contaminen entre si
+        List<LoadResult> results = List.of(
+                generator.run("GET /invoices", invoicesRate,
+                        i -> status(client.get().uri("/invoices"))),
+                generator.run("GET /dishes/pageable", pageableRate,
+                        i -> status(client.get().uri("/dishes/pageable?page={page}&size={size}", i % pages, pageSize))),
+                generator.run("GET /invoices/generateReport/{id}", reportRate,
+                        i -> status(client.get().uri("/invoices/generateReport/{id}", invoiceIds.get((int) (i % invoiceIds.size())))))
+        );
+
+        results.forEach(System.out::println);
+        Path report = Path.of("target", "load-test", "results.json");
+        Files.createDirectories(report.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(report.toFile(), results);
+
+        assertThat(results).allSatisfy(result -> assertThat(result.completed()).isPositive());
+    }
+
+    //el body se consume completo (y se libera) para medir la respuesta entera, no solo las cabeceras
+    private static Mono<Integer> status(WebClient.RequestHeadersSpec<?> spec) {
+        return spec.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().value()));
+    }
+}
@@ -0,0 +1,121 @@
+package com.mitocode.loadtest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+//Generador de carga de modelo abierto: las peticiones salen a una tasa fija sin esperar respuestas.
+//La latencia se mide desde el instante programado de salida, asi una respuesta lenta no oculta las
+//peticiones que se debieron enviar mientras tanto (coordinated omission).
+public class LoadGenerator {
+
+    private final Duration duration;
+    private final int maxInFlight;
+
+    public LoadGenerator(Duration duration, int maxInFlight) {
+        this.duration = duration;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @param request recibe el numero de peticion y emite el codigo HTTP con el body ya consumido
+     */
+    public LoadResult run(String endpoint, double ratePerSecond, LongFunction<Mono<Integer>> request) {
+        long intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        long total = (long) (ratePerSecond * duration.toMillis() / 1000.0);
+
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        AtomicLong failures = new AtomicLong();
+        AtomicLong dropped = new AtomicLong();
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long start = System.nanoTime();
+        Flux.interval(Duration.ofNanos(intervalNanos))
+                .take(total)
+                .flatMap(i -> {
+                    long scheduledAt = start + (i + 1) * intervalNanos;
+                    //con el servidor saturado se descarta en lugar de acumular conexiones sin limite
+                    if (inFlight.incrementAndGet() > maxInFlight) {
+                        inFlight.decrementAndGet();
+                        dropped.incrementAndGet();
+                        return Mono.empty();
+                    }
+                    return request.apply(i)
+                            .doOnNext(status -> {
+                                latencies.add(System.nanoTime() - scheduledAt);
+                                statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+                            })
+                            .onErrorResume(e -> {
+                                failures.incrementAndGet();
+                                return Mono.empty();
+                            })
+                            .doFinally(signal -> inFlight.decrementAndGet());
+                }, Integer.MAX_VALUE)
+                .blockLast(duration.multipliedBy(3));
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        long errors = failures.get() + statuses.entrySet().stream()
+                .filter(e -> e.getKey() >= 400)
+                .mapToLong(e -> e.getValue().get())
+                .sum();
+
+        return new LoadResult(
+                endpoint,
+                ratePerSecond,
+                total,
+                sorted.length,
+                errors,
+                dropped.get(),
+                sorted.length / elapsedSeconds,
+                millis(percentile(sorted, 0.50)),
+                millis(percentile(sorted, 0.90)),
+                millis(percentile(sorted, 0.95)),
+                millis(percentile(sorted, 0.99)),
+                millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]),
+                statuses.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get()))
+        );
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    public record LoadResult(String endpoint,
+                             double targetRate,
+                             long scheduled,
+                             long completed,
+                             long errors,
+                             long dropped,
+                             double throughput,
+                             double p50Ms,
+                             double p90Ms,
+                             double p95Ms,
+                             double p99Ms,
+                             double maxMs,
+                             Map<Integer, Long> statuses) {
+
+        @Override
+        public String toString() {
+            return String.format("%-36s rate=%7.1f/s sent=%6d ok=%6d err=%5d drop=%5d thr=%8.1f/s p50=%8.2fms p90=%8.2fms p95=%8.2fms p99=%8.2fms max=%8.2fms %s",
+                    endpoint, targetRate, scheduled, completed, errors, dropped, throughput, p50Ms, p90Ms, p95Ms, p99Ms, maxMs, statuses);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.mitocode.loadtest;
+
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import com.mitocode.model.InvoiceDetail;
+import com.mitocode.model.Menu;
+import com.mitocode.model.Role;
+import com.mitocode.model.User;
+import com.mitocode.mongo.MongoIndexManager;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+//Puebla todas las colecciones @Document con volumenes configurables y datos reproducibles (semilla fija)
+public class LoadTestDataSeeder {
+
+    private static final int INSERT_BATCH = 1000;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Random random = new Random(42);
+
+    public LoadTestDataSeeder(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public Mono<SeededData> seed(Volumes volumes) {
+        List<Role> roles = generate(volumes.roles(), i -> new Role(id(), i == 0 ? "ADMIN" : "ROLE_" + i));
+        List<Client> clients = generate(volumes.clients(), i -> new Client(id(), "Nombre" + i, "Apellido" + i,
+                LocalDate.of(1970, 1, 1).plusDays(random.nextInt(15000)), null));
+        List<Dish> dishes = generate(volumes.dishes(), i -> new Dish(id(), "Plato " + i,
+                5.0 + random.nextInt(9500) / 100.0, random.nextInt(10) != 0));
+        //formato compacto, igual que lo guarda InvoiceServiceImpl
+        List<Invoice> invoices = generate(volumes.invoices(), i -> new Invoice(id(), "Factura " + i,
+                clientRef(clients.get(random.nextInt(clients.size()))), items(dishes, volumes.itemsPerInvoice())));
+        List<Menu> menus = generate(volumes.menus(), i -> new Menu(id(), "icon" + i, "Menu " + i, "/page" + i,
+                List.of(roles.get(i % roles.size()).getName())));
+        List<User> users = generate(volumes.users(), i -> new User(id(), "user" + i, "$2a$10$loadtest", true,
+                List.of(roles.get(i % roles.size()))));
+
+        return insert(roles, Role.class)
+                .then(insert(clients, Client.class))
+                .then(insert(dishes, Dish.class))
+                .then(insert(invoices, Invoice.class))
+                .then(insert(menus, Menu.class))
+                .then(insert(users, User.class))
+                .then(ensureIndexes())
+                .thenReturn(new SeededData(invoices.stream().map(Invoice::getId).toList()));
+    }
+
+    private List<InvoiceDetail> items(List<Dish> dishes, int count) {
+        List<InvoiceDetail> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Dish dish = dishes.get(random.nextInt(dishes.size()));
+            Dish ref = new Dish();
+            ref.setId(dish.getId());
+            items.add(new InvoiceDetail(1 + random.nextInt(4), ref, dish.getPrice()));
+        }
+        return items;
+    }
+
+    private static Client clientRef(Client client) {
+        Client ref = new Client();
+        ref.setId(client.getId());
+        return ref;
+    }
+
+    //remove y no dropCollection: drop borraria los indices que MongoIndexManager creo al arrancar
+    private <T> Mono<Void> insert(List<T> documents, Class<T> type) {
+        return mongoTemplate.remove(new Query(), type)
+                .thenMany(Flux.fromIterable(documents).buffer(INSERT_BATCH))
+                .concatMap(batch -> mongoTemplate.insert(batch, type))
+                .then();
+    }
+
+    //MongoIndexManager los crea en ApplicationReadyEvent sin esperar: aqui se asegura que existan antes de medir
+    private Mono<Void> ensureIndexes() {
+        MongoIndexManager indexManager = new MongoIndexManager(mongoTemplate);
+        return Flux.fromIterable(indexManager.documentEntities())
+                .concatMap(entity -> Flux.fromIterable(indexManager.declaredIndexes(entity))
+                        .concatMap(index -> mongoTemplate.indexOps(entity.getType()).ensureIndex(index)))
+                .then();
+    }
+
+    private static <T> List<T> generate(int count, IntFunction<T> factory) {
+        List<T> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(factory.apply(i));
+        }
+        return list;
+    }
+
+    private static String id() {
+        return ObjectId.get().toHexString();
+    }
+
+    public record Volumes(int clients, int dishes, int invoices, int itemsPerInvoice, int menus, int roles, int users) {
+    }
+
+    public record SeededData(List<String> invoiceIds) {
+    }
+}
@@ -0,0 +1,151 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.service.SalesPeriod;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ejecuta los pipelines de ventas contra un mongod embebido (mvn -Pload-test verify).
+ * Cubre lo que no se ve en la forma de las etapas: ingreso con precio cobrado, embebido o actual,
+ * facturas contadas una vez aunque tengan varias lineas del mismo plato y semanas ISO en una zona.
+ */
+class SalesPipelinesIT {
+
+    private static final ObjectId CEVICHE = new ObjectId();
+    private static final ObjectId CHICHA = new ObjectId();
+    private static final ObjectId ANA = new ObjectId();
+    private static final ObjectId LUIS = new ObjectId();
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient client;
+    private static MongoDatabase database;
+
+    @BeforeAll
+    static void seed() {
+        mongod = Mongod.instance().start(Version.Main.V6_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        client = MongoClients.create("mongodb://" + address.getHost() + ":" + address.getPort());
+        database = client.getDatabase("sales");
+
+        insert("dishes",
+                new Document("_id", CEVICHE).append("name", "Ceviche").append("price", 30.0),
+                new Document("_id", CHICHA).append("name", "Chicha").append("price", 8.0));
+        insert("clients",
+                new Document("_id", ANA).append("firstName", "Ana").append("lastName", "Diaz"),
+                new Document("_id", LUIS).append("firstName", "Luis").append("lastName", "Rojas"));
+        insert("invoices",
+                //lunes 2024-W10; dos lineas de ceviche en la misma factura, con el precio cobrado
+                invoice("2024-03-04T15:00:00Z", ANA,
+                        item(2, new Document("_id", CEVICHE), 25.0),
+                        item(1, new Document("_id", CHICHA), 8.0),
+                        item(1, new Document("_id", CEVICHE), 25.0)),
+                //lunes 2024-W11 en UTC, domingo 2024-W10 en Lima; factura sin migrar: precio del plato embebido
+                invoice("2024-03-11T03:00:00Z", ANA,
+                        item(3, new Document("_id", CEVICHE).append("name", "Ceviche").append("price", 20.0), null)),
+                //sin precio en ningun lado: el actual del plato (chicha a 8)
+                invoice("2024-03-12T12:00:00Z", LUIS,
+                        item(2, new Document("_id", CHICHA), null),
+                        item(1, new Document("_id", CEVICHE), 25.0)));
+    }
+
+    @AfterAll
+    static void stop() {
+        if (client != null) {
+            client.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @Test
+    void dishRevenueUsesChargedEmbeddedOrCurrentPrice() {
+        List<Document> rows = aggregate(SalesPipelines.byDish("dishes", null, null, 10));
+
+        assertThat(rows).hasSize(2);
+        //25*2 + 25 + 20*3 + 25
+        assertRow(rows.get(0), "dishId", CEVICHE.toHexString(), "lines", 4, 7, 160.0);
+        assertThat(rows.get(0).getString("nameDish")).isEqualTo("Ceviche");
+        //8 + 8*2 (precio actual)
+        assertRow(rows.get(1), "dishId", CHICHA.toHexString(), "lines", 2, 3, 24.0);
+    }
+
+    @Test
+    void clientsCountEachInvoiceOnceAcrossDishGroups() {
+        List<Document> rows = aggregate(SalesPipelines.byClient("dishes", "clients", null, null, 10));
+
+        assertThat(rows).hasSize(2);
+        assertRow(rows.get(0), "clientId", ANA.toHexString(), "invoices", 2, 7, 143.0);
+        assertThat(rows.get(0).getString("surnameClient")).isEqualTo("Diaz");
+        assertRow(rows.get(1), "clientId", LUIS.toHexString(), "invoices", 1, 3, 41.0);
+    }
+
+    @Test
+    void weeksAreIsoWeeksInTheRequestedZone() {
+        List<Document> utc = aggregate(SalesPipelines.byPeriod("dishes", null, null, SalesPeriod.WEEK, ZoneId.of("UTC")));
+        List<Document> lima = aggregate(SalesPipelines.byPeriod("dishes", null, null, SalesPeriod.WEEK, ZoneId.of("America/Lima")));
+
+        assertThat(utc).hasSize(2);
+        assertRow(utc.get(0), "period", "2024-W10", "invoices", 1, 4, 83.0);
+        assertRow(utc.get(1), "period", "2024-W11", "invoices", 2, 6, 101.0);
+        //la factura del lunes 03:00 UTC es del domingo en Lima
+        assertThat(lima).hasSize(2);
+        assertRow(lima.get(0), "period", "2024-W10", "invoices", 2, 7, 143.0);
+        assertRow(lima.get(1), "period", "2024-W11", "invoices", 1, 3, 41.0);
+    }
+
+    @Test
+    void windowKeepsOnlyInvoicesCreatedInside() {
+        Instant from = Instant.parse("2024-03-11T00:00:00Z");
+        List<Document> rows = aggregate(SalesPipelines.byPeriod("dishes", from, null, SalesPeriod.MONTH, ZoneId.of("UTC")));
+
+        assertThat(rows).hasSize(1);
+        assertRow(rows.get(0), "period", "2024-03", "invoices", 2, 6, 101.0);
+    }
+
+    private static void assertRow(Document row, String keyField, String key, String countField, long count, long quantity, double revenue) {
+        assertThat(row.getString(keyField)).isEqualTo(key);
+        assertThat(((Number) row.get(countField)).longValue()).as(countField).isEqualTo(count);
+        assertThat(((Number) row.get("quantity")).longValue()).as("quantity").isEqualTo(quantity);
+        assertThat(((Number) row.get("revenue")).doubleValue()).as("revenue").isEqualTo(revenue);
+    }
+
+    private static List<Document> aggregate(List<Document> pipeline) {
+        return Flux.from(database.getCollection("invoices").aggregate(pipeline)).collectList().block();
+    }
+
+    private static void insert(String collection, Document... documents) {
+        Mono.from(database.getCollection(collection).insertMany(List.of(documents))).block();
+    }
+
+    private static Document invoice(String createdAt, ObjectId clientId, Document... items) {
+        return new Document("_id", new ObjectId(Date.from(Instant.parse(createdAt))))
+                .append("client", new Document("_id", clientId))
+                .append("items", List.of(items));
+    }
+
+    private static Document item(int quantity, Document dish, Double price) {
+        Document item = new Document("quantity", quantity).append("dish", dish);
+        return price == null ? item : item.append("price", price);
+    }
+}
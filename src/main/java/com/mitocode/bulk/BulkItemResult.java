@@ -0,0 +1,32 @@
+package com.mitocode.bulk;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+
+    //posicion del elemento en el arreglo recibido
+    private int index;
+    private Object id;
+    private Status status;
+    private String message;
+
+    public enum Status {
+        //UNCERTAIN: otra peticion concurrente borro documentos del lote; no se sabe si este lo borro (o reemplazo) esta
+        CREATED, UPDATED, DELETED, INVALID, NOT_FOUND, FAILED, UNCERTAIN;
+
+        public boolean isSuccess() {
+            return this == CREATED || this == UPDATED || this == DELETED;
+        }
+    }
+
+    public static BulkItemResult of(int index, Object id, Status status) {
+        return new BulkItemResult(index, id, status, null);
+    }
+}
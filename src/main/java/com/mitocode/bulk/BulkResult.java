@@ -0,0 +1,33 @@
+package com.mitocode.bulk;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkResult {
+
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<BulkItemResult> items;
+
+    public static BulkResult of(List<BulkItemResult> items) {
+        List<BulkItemResult> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingInt(BulkItemResult::getIndex));
+        int ok = (int) sorted.stream().filter(e -> e.getStatus().isSuccess()).count();
+        return new BulkResult(sorted.size(), ok, sorted.size() - ok, sorted);
+    }
+
+    public BulkResult merge(BulkResult other) {
+        List<BulkItemResult> all = new ArrayList<>(items);
+        all.addAll(other.getItems());
+        return of(all);
+    }
+}
@@ -0,0 +1,63 @@
+package com.mitocode.bulk;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//Valida cada DTO de una carga masiva: los invalidos se reportan por indice y solo los validos
+//llegan al servicio. Los indices del resultado siempre refieren al arreglo original.
+@Component
+@RequiredArgsConstructor
+public class BulkSupport {
+
+    private final Validator validator;
+
+    public <D> Mono<BulkResult> execute(List<D> items, Function<List<D>, Mono<BulkResult>> operation) {
+        List<BulkItemResult> invalid = new ArrayList<>();
+        List<D> valid = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+
+        for (int i = 0; i < items.size(); i++) {
+            D item = items.get(i);
+            Set<ConstraintViolation<D>> violations = item == null ? Set.of() : validator.validate(item);
+            if (item == null || !violations.isEmpty()) {
+                String message = item == null ? "item is null" : violations.stream()
+                        .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", "));
+                invalid.add(new BulkItemResult(i, null, BulkItemResult.Status.INVALID, message));
+            } else {
+                valid.add(item);
+                positions.add(i);
+            }
+        }
+
+        Mono<BulkResult> result = valid.isEmpty() ? Mono.just(BulkResult.of(List.of())) : operation.apply(valid);
+        return result.map(e -> {
+            List<BulkItemResult> all = new ArrayList<>(invalid);
+            e.getItems().forEach(item -> {
+                item.setIndex(positions.get(item.getIndex()));
+                all.add(item);
+            });
+            return BulkResult.of(all);
+        });
+    }
+
+    //207 Multi-Status cuando parte de la carga fallo
+    public ResponseEntity<BulkResult> toResponse(BulkResult result) {
+        return ResponseEntity.status(result.getFailed() == 0 ? HttpStatus.OK : HttpStatus.MULTI_STATUS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(result);
+    }
+}
@@ -0,0 +1,29 @@
+package com.mitocode.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//app.cache.entities.<coleccion>.* : solo las colecciones configuradas tienen cache
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    private Map<String, Spec> entities = new HashMap<>();
+
+    @Data
+    public static class Spec {
+        private long maxSize = 10000;
+        private long ttlSeconds = 600;
+        private WriteMode mode = WriteMode.INVALIDATE;
+    }
+
+    public enum WriteMode {
+        //save/update/delete borran la entrada; la siguiente lectura va a Mongo
+        INVALIDATE,
+        //save/update dejan en cache lo que devolvio Mongo; delete borra la entrada
+        WRITE_THROUGH
+    }
+}
@@ -0,0 +1,38 @@
+package com.mitocode.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+//Una cache por coleccion configurada; CRUDImpl la consulta por el nombre de coleccion de su entidad
+@Component
+public class CrudCacheRegistry {
+
+    private final Map<String, ReactiveCache<?, ?>> caches;
+
+    public CrudCacheRegistry(CacheProperties properties, MeterRegistry registry) {
+        Map<String, ReactiveCache<?, ?>> map = new HashMap<>();
+        properties.getEntities().forEach((collection, spec) -> map.put(collection, new ReactiveCache<>(
+                collection,
+                spec.getMaxSize(),
+                Duration.ofSeconds(spec.getTtlSeconds()),
+                spec.getMode() == CacheProperties.WriteMode.WRITE_THROUGH,
+                registry
+        )));
+        this.caches = Collections.unmodifiableMap(map);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <K, V> ReactiveCache<K, V> get(String collection) {
+        return collection == null ? null : (ReactiveCache<K, V>) caches.get(collection);
+    }
+
+    public Collection<ReactiveCache<?, ?>> getAll() {
+        return caches.values();
+    }
+}
@@ -0,0 +1,89 @@
+package com.mitocode.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+//Cache read-through sobre Caffeine. Los fallos concurrentes sobre la misma clave comparten
+//el mismo CompletableFuture, asi que solo una consulta llega a Mongo.
+public class ReactiveCache<K, V> {
+
+    private final String name;
+    private final AsyncCache<K, V> cache;
+    private final long maxSize;
+    private final Duration ttl;
+    private final boolean writeThrough;
+
+    public ReactiveCache(String name, long maxSize, Duration ttl, boolean writeThrough, MeterRegistry registry) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.writeThrough = writeThrough;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+
+    public Mono<V> get(K key, Function<K, Mono<V>> loader) {
+        //si el loader viene vacio el future termina en null y Caffeine no guarda la entrada
+        CompletableFuture<V> future = cache.get(key, (k, executor) -> loader.apply(k).toFuture());
+        //suppressCancel: cancelar una peticion no debe cancelar la carga compartida
+        return Mono.fromFuture(future, true);
+    }
+
+    public Mono<Map<K, V>> getAll(Collection<K> keys, Function<Collection<K>, Flux<V>> loader, Function<V, K> keyOf) {
+        CompletableFuture<Map<K, V>> future = cache.getAll(keys,
+                (missing, executor) -> loader.apply(new ArrayList<>(missing)).collectMap(keyOf).toFuture());
+        return Mono.fromFuture(future, true);
+    }
+
+    public void put(K key, V value) {
+        cache.put(key, CompletableFuture.completedFuture(value));
+    }
+
+    public void invalidate(K key) {
+        cache.synchronous().invalidate(key);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public boolean isWriteThrough() {
+        return writeThrough;
+    }
+}
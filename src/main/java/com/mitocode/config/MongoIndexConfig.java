@@ -0,0 +1,20 @@
+package com.mitocode.config;
+
+import com.mitocode.mongo.CollscanCommandListener;
+import com.mongodb.reactivestreams.client.MongoClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+//Deteccion de COLLSCAN: activar solo en desarrollo (perfil dev), cada forma de consulta nueva cuesta un explain
+@Configuration
+@ConditionalOnProperty(name = "app.mongo.collscan-check", havingValue = "true")
+public class MongoIndexConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer collscanCheck(ObjectProvider<MongoClient> mongoClient) {
+        return builder -> builder.addCommandListener(new CollscanCommandListener(mongoClient));
+    }
+}
@@ -0,0 +1,19 @@
+package com.mitocode.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class UploadConfig {
+
+    //El SDK de Cloudinary es bloqueante: corre aqui, nunca en el event loop.
+    //Pasado el limite de tareas en cola el scheduler rechaza y respondemos 503.
+    @Bean(name = "uploadScheduler", destroyMethod = "dispose")
+    public Scheduler uploadScheduler(@Value("${app.upload.max-concurrency:4}") int maxConcurrency,
+                                     @Value("${app.upload.max-queued:64}") int maxQueued) {
+        return Schedulers.newBoundedElastic(maxConcurrency, maxQueued, "photo-upload");
+    }
+}
@@ -0,0 +1,72 @@
+package com.mitocode.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mitocode.cache.CrudCacheRegistry;
+import com.mitocode.cache.ReactiveCache;
+import com.mitocode.dto.CacheStatsDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/admin/caches")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final CrudCacheRegistry registry;
+
+    @GetMapping
+    public Mono<ResponseEntity<Flux<CacheStatsDTO>>> findAll() {
+        Flux<CacheStatsDTO> fx = Flux.fromIterable(registry.getAll()).map(this::convertToDto);
+
+        return Mono.just(ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(fx)
+        );
+    }
+
+    @GetMapping("/{name}")
+    public Mono<ResponseEntity<CacheStatsDTO>> findByName(@PathVariable("name") String name) {
+        return Mono.justOrEmpty(registry.get(name))
+                .map(this::convertToDto)
+                .map(e -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(e)
+                )
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping
+    public Mono<ResponseEntity<Object>> flushAll() {
+        return Mono.fromRunnable(() -> registry.getAll().forEach(ReactiveCache::invalidateAll))
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+
+    @DeleteMapping("/{name}")
+    public Mono<ResponseEntity<Object>> flush(@PathVariable("name") String name) {
+        return Mono.justOrEmpty(registry.get(name))
+                .map(cache -> {
+                    cache.invalidateAll();
+                    return ResponseEntity.noContent().build();
+                })
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    private CacheStatsDTO convertToDto(ReactiveCache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDTO(
+                cache.getName(),
+                cache.isWriteThrough() ? "write-through" : "invalidate",
+                cache.getMaxSize(),
+                cache.getTtl().toSeconds(),
+                cache.size(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount()
+        );
+    }
+}
@@ -1,16 +1,22 @@
 package com.mitocode.controller;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
+import com.mitocode.bulk.BulkResult;
+import com.mitocode.bulk.BulkSupport;
 import com.mitocode.dto.ClientDTO;
+import com.mitocode.mapper.ClientMapper;
+import com.mitocode.metrics.ReactiveMetrics;
 import com.mitocode.model.Client;
+import com.mitocode.pagination.CursorPageSupport;
 import com.mitocode.pagination.PageSupport;
+import com.mitocode.projection.ApiFields;
+import com.mitocode.query.QueryParser;
+import com.mitocode.query.QuerySpec;
 import com.mitocode.service.IClientService;
+import com.mitocode.service.IPhotoStorage;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.cloudinary.json.JSONObject;
-import org.modelmapper.ModelMapper;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.Link;
@@ -21,11 +27,9 @@ import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import java.io.File;
-import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Files;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
 import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.methodOn;
 
@@ -35,13 +39,18 @@ import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.met
 public class ClientController {
 
     private final IClientService service;
-    @Qualifier("clientMapper")
-    private final ModelMapper mapper;
-    private final Cloudinary cloudinary;
+    private final ClientMapper mapper;
+    private final IPhotoStorage photoStorage;
+    private final BulkSupport bulkSupport;
+    private final QueryParser queryParser;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.photo.storage:cloudinary}")
+    private String photoStorageType;
 
     @GetMapping
-    public Mono<ResponseEntity<Flux<ClientDTO>>> findAll() {
-        Flux<ClientDTO> fx = service.findAll().map(this::convertToDto); //e -> convertToDto(e)
+    public Mono<ResponseEntity<Flux<ClientDTO>>> findAll(@RequestParam(name = "fields", required = false) String fields) {
+        Flux<ClientDTO> fx = service.findAll(select(fields)).map(this::convertToDto); //e -> convertToDto(e)
 
         return Mono.just(ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
@@ -50,9 +59,16 @@ public class ClientController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    //Documentos a medida que salen del cursor de Mongo (Accept: application/x-ndjson o text/event-stream)
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<ClientDTO> stream(@RequestParam(name = "fields", required = false) String fields) {
+        return service.findAll(select(fields)).map(this::convertToDto);
+    }
+
     @GetMapping("/{id}")
-    public Mono<ResponseEntity<ClientDTO>> findById(@PathVariable("id") String id) {
-        return service.findById(id)
+    public Mono<ResponseEntity<ClientDTO>> findById(@PathVariable("id") String id,
+                                                  @RequestParam(name = "fields", required = false) String fields) {
+        return service.findById(id, select(fields))
                 .map(this::convertToDto)
                 .map(e -> ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
@@ -104,12 +120,30 @@ public class ClientController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    @PostMapping("/bulk")
+    public Mono<ResponseEntity<BulkResult>> saveAll(@RequestBody List<ClientDTO> dtos) {
+        return bulkSupport.execute(dtos, valid -> service.saveAll(valid.stream().map(this::convertToDocument).toList()))
+                .map(bulkSupport::toResponse);
+    }
+
+    @PutMapping("/bulk")
+    public Mono<ResponseEntity<BulkResult>> bulkUpdate(@RequestBody List<ClientDTO> dtos) {
+        return bulkSupport.execute(dtos, valid -> service.bulkUpdate(valid.stream().map(this::convertToDocument).toList()))
+                .map(bulkSupport::toResponse);
+    }
+
+    @PostMapping("/bulk/delete")
+    public Mono<ResponseEntity<BulkResult>> bulkDelete(@RequestBody List<String> ids) {
+        return service.bulkDelete(ids)
+                .map(bulkSupport::toResponse);
+    }
+
     private ClientDTO clientHateoas;
 
     @GetMapping("/hateoas/{id}")
     public Mono<EntityModel<ClientDTO>> getHateoas(@PathVariable("id") String id){
         // /clientes/3
-        Mono<Link> monoLink = linkTo(methodOn(ClientController.class).findById(id)).withRel("client-info").toMono();
+        Mono<Link> monoLink = linkTo(methodOn(ClientController.class).findById(id, null)).withRel("client-info").toMono();
 
         //PRACTICA ES COMUN PERO NO RECOMENDADA
         /*return service.findById(id)
@@ -133,9 +167,13 @@ public class ClientController {
     @GetMapping("/pageable")
     public Mono<ResponseEntity<PageSupport<ClientDTO>>> getPage(
             @RequestParam(name = "page", defaultValue = "0") int page,
-            @RequestParam(name = "size", defaultValue = "2") int size
+            @RequestParam(name = "size", defaultValue = "2") int size,
+            @RequestParam(name = "fields", required = false) String fields,
+            @RequestParam(name = "filter", required = false) List<String> filter,
+            @RequestParam(name = "sort", required = false) String sort
     ){
-        return service.getPage(PageRequest.of(page, size))
+        QuerySpec query = queryParser.parse(Client.class, filter, sort);
+        return service.getPage(PageRequest.of(page, size, query.sort()), query.criteria(), select(fields))
                 .map(pageSupport -> new PageSupport<>(
                             pageSupport.getContent().stream().map(this::convertToDto).toList(),
                             pageSupport.getPageNumber(),
@@ -150,64 +188,61 @@ public class ClientController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
-    @PostMapping("/v1/upload/{id}")
-    public Mono<ResponseEntity<ClientDTO>> uploadV1(@PathVariable("id") String id, @RequestPart("file") FilePart filePart) throws Exception{
-        File f = Files.createTempFile("temp", filePart.filename()).toFile();
-
-        return filePart.transferTo(f)
-                .then(service.findById(id)
-                        .flatMap(c -> {
-                            Map response;
-                            try {
-                                response = cloudinary.uploader().upload(f, ObjectUtils.asMap("resource_type", "auto"));
-                                JSONObject json = new JSONObject(response);
-                                String url = json.getString("url");
-                                c.setUrlPhoto(url);
-                                return service.update(id, c)
-                                        .map(this::convertToDto)
-                                        .map(e -> ResponseEntity
-                                                .ok()
-                                                .body(e)
-                                        );
-                            } catch (IOException e) {
-                                return Mono.error(new RuntimeException(e));
-                            }
-
-                        })
+    @GetMapping("/cursor")
+    public Mono<ResponseEntity<CursorPageSupport<ClientDTO>>> getCursorPage(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = PageSupport.DEFAULT_PAGE_SIZE) int size
+    ){
+        return service.getCursorPage(cursor, size)
+                .map(pageSupport -> new CursorPageSupport<>(
+                            pageSupport.getContent().stream().map(this::convertToDto).toList(),
+                            pageSupport.getPageSize(),
+                            pageSupport.getNextCursor()
+                            )
                 )
-                .defaultIfEmpty(ResponseEntity.notFound().build());
+                .map(e -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(e)
+                );
     }
 
-    @PostMapping("/v2/upload/{id}")
-    public Mono<ResponseEntity<ClientDTO>> uploadV2(@PathVariable("id") String id, @RequestPart("file") FilePart filePart) throws Exception {
-        return service.findById(id)
-                .flatMap(c -> {
-                   try{
-                       File f = Files.createTempFile("temp", filePart.filename()).toFile();
-                       filePart.transferTo(f).block();
+    @PostMapping("/v1/upload/{id}")
+    public Mono<ResponseEntity<ClientDTO>> uploadV1(@PathVariable("id") String id, @RequestPart("file") FilePart filePart) {
+        return upload(id, filePart);
+    }
 
-                       Map response = cloudinary.uploader().upload(f, ObjectUtils.asMap("resource_type", "auto"));
-                       JSONObject json = new JSONObject(response);
-                       String url = json.getString("url");
+    @PostMapping("/v2/upload/{id}")
+    public Mono<ResponseEntity<ClientDTO>> uploadV2(@PathVariable("id") String id, @RequestPart("file") FilePart filePart) {
+        return upload(id, filePart);
+    }
 
-                       c.setUrlPhoto(url);
+    private Mono<ResponseEntity<ClientDTO>> upload(String id, FilePart filePart) {
+        return service.findById(id)
+                //photo.upload{storage, outcome}: solo la subida al almacenamiento, sin el findById/update
+                .flatMap(c -> ReactiveMetrics.timed(photoStorage.store(id, filePart), meterRegistry, "photo.upload", "storage", photoStorageType)
+                        //copia: con cache de clientes, c es la instancia guardada en la cache y otros lectores
+                        //verian la url nueva antes de que el update se confirme (o aunque falle)
+                        .flatMap(url -> service.update(id,
+                                new Client(c.getId(), c.getFirstName(), c.getLastName(), c.getBirthDate(), url)))
+                )
+                .map(this::convertToDto)
+                .map(e -> ResponseEntity
+                        .ok()
+                        .body(e)
+                )
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
 
-                       return service.update(id, c)
-                               .map(this::convertToDto)
-                               .map(e -> ResponseEntity
-                                       .ok()
-                                       .body(e));
-                   }catch(Exception e){
-                       return Mono.error(new RuntimeException());
-                   }
-                });
+    //?fields=nameX,priceX: proyeccion en Mongo; los campos no pedidos quedan null y no se serializan
+    private Set<String> select(String fields) {
+        return ApiFields.select(Client.class, fields).documentFields();
     }
 
     private ClientDTO convertToDto(Client model){
-        return mapper.map(model, ClientDTO.class);
+        return mapper.toDto(model);
     }
 
     private Client convertToDocument(ClientDTO dto){
-        return mapper.map(dto, Client.class);
+        return mapper.toDocument(dto);
     }
 }
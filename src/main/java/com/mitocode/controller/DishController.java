@@ -1,13 +1,18 @@
 package com.mitocode.controller;
 
+import com.mitocode.bulk.BulkResult;
+import com.mitocode.bulk.BulkSupport;
 import com.mitocode.dto.DishDTO;
+import com.mitocode.mapper.DishMapper;
 import com.mitocode.model.Dish;
+import com.mitocode.pagination.CursorPageSupport;
 import com.mitocode.pagination.PageSupport;
+import com.mitocode.projection.ApiFields;
+import com.mitocode.query.QueryParser;
+import com.mitocode.query.QuerySpec;
 import com.mitocode.service.IDishService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.Link;
@@ -18,7 +23,8 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.net.URI;
-import java.util.Objects;
+import java.util.List;
+import java.util.Set;
 
 import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.methodOn;
@@ -29,23 +35,31 @@ import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.met
 public class DishController {
 
     private final IDishService service;
-    @Qualifier("defaultMapper")
-    private final ModelMapper mapper;
+    private final DishMapper mapper;
+    private final BulkSupport bulkSupport;
+    private final QueryParser queryParser;
 
     @GetMapping
-    public Mono<ResponseEntity<Flux<DishDTO>>> findAll() {
-        return service.findAll()
-                .map(this::convertToDto)
-                .collectList()
-                .map(dishDTOS -> ResponseEntity.ok()
+    public Mono<ResponseEntity<Flux<DishDTO>>> findAll(@RequestParam(name = "fields", required = false) String fields) {
+        Flux<DishDTO> fx = service.findAll(select(fields)).map(this::convertToDto); //e -> convertToDto(e)
+
+        return Mono.just(ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
-                        .body(Flux.fromIterable(dishDTOS)))
+                        .body(fx)
+                )
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    //Documentos a medida que salen del cursor de Mongo (Accept: application/x-ndjson o text/event-stream)
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<DishDTO> stream(@RequestParam(name = "fields", required = false) String fields) {
+        return service.findAll(select(fields)).map(this::convertToDto);
+    }
+
     @GetMapping("/{id}")
-    public Mono<ResponseEntity<DishDTO>> findById(@PathVariable("id") String id) {
-        return service.findById(id)
+    public Mono<ResponseEntity<DishDTO>> findById(@PathVariable("id") String id,
+                                                  @RequestParam(name = "fields", required = false) String fields) {
+        return service.findById(id, select(fields))
                 .map(this::convertToDto)
                 .map(e -> ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
@@ -70,24 +84,18 @@ public class DishController {
 
     @PutMapping("/{id}")
     public Mono<ResponseEntity<DishDTO>> update(@Valid @PathVariable("id") String id, @RequestBody DishDTO dto) {
-        return service.findById(id).hasElement()
-                .thenReturn(Objects.requireNonNull(service.update(id, convertToDocument(dto)).block()))
-                .map(this::convertToDto)
-                .map(e-> ResponseEntity.ok().body(e))
-                .defaultIfEmpty(ResponseEntity.notFound().build());
-
-        /*return Mono.just(dto)
+        return Mono.just(dto)
                 .map(e -> {
                     e.setId(id);
                     return e;
                 })
-                .flatMap( e -> service.update(id, convertToDocument(dto)))
+                .flatMap( e -> service.update(id, convertToDocument(e)))
                 .map(this::convertToDto)
                 .map(e -> ResponseEntity
                         .ok()
                         .body(e)
                 )
-                .defaultIfEmpty(ResponseEntity.notFound().build());*/
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
@@ -103,9 +111,27 @@ public class DishController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    @PostMapping("/bulk")
+    public Mono<ResponseEntity<BulkResult>> saveAll(@RequestBody List<DishDTO> dtos) {
+        return bulkSupport.execute(dtos, valid -> service.saveAll(valid.stream().map(this::convertToDocument).toList()))
+                .map(bulkSupport::toResponse);
+    }
+
+    @PutMapping("/bulk")
+    public Mono<ResponseEntity<BulkResult>> bulkUpdate(@RequestBody List<DishDTO> dtos) {
+        return bulkSupport.execute(dtos, valid -> service.bulkUpdate(valid.stream().map(this::convertToDocument).toList()))
+                .map(bulkSupport::toResponse);
+    }
+
+    @PostMapping("/bulk/delete")
+    public Mono<ResponseEntity<BulkResult>> bulkDelete(@RequestBody List<String> ids) {
+        return service.bulkDelete(ids)
+                .map(bulkSupport::toResponse);
+    }
+
     @GetMapping("/hateoas/{id}")
     public Mono<EntityModel<DishDTO>> getHateoas(@PathVariable("id") String id){
-        Mono<Link> monoLink = linkTo(methodOn(DishController.class).findById(id)).withRel("dish-info").toMono();
+        Mono<Link> monoLink = linkTo(methodOn(DishController.class).findById(id, null)).withRel("dish-info").toMono();
         return service.findById(id)
                 .map(this::convertToDto)
                 .zipWith(monoLink, EntityModel::of);  //(d, link) -> EntityModel.of(d, link)
@@ -114,9 +140,13 @@ public class DishController {
     @GetMapping("/pageable")
     public Mono<ResponseEntity<PageSupport<DishDTO>>> getPage(
             @RequestParam(name = "page", defaultValue = "0") int page,
-            @RequestParam(name = "size", defaultValue = "2") int size
+            @RequestParam(name = "size", defaultValue = "2") int size,
+            @RequestParam(name = "fields", required = false) String fields,
+            @RequestParam(name = "filter", required = false) List<String> filter,
+            @RequestParam(name = "sort", required = false) String sort
     ){
-        return service.getPage(PageRequest.of(page, size))
+        QuerySpec query = queryParser.parse(Dish.class, filter, sort);
+        return service.getPage(PageRequest.of(page, size, query.sort()), query.criteria(), select(fields))
                 .map(pageSupport -> new PageSupport<>(
                             pageSupport.getContent().stream().map(this::convertToDto).toList(),
                             pageSupport.getPageNumber(),
@@ -131,11 +161,34 @@ public class DishController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/cursor")
+    public Mono<ResponseEntity<CursorPageSupport<DishDTO>>> getCursorPage(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = PageSupport.DEFAULT_PAGE_SIZE) int size
+    ){
+        return service.getCursorPage(cursor, size)
+                .map(pageSupport -> new CursorPageSupport<>(
+                            pageSupport.getContent().stream().map(this::convertToDto).toList(),
+                            pageSupport.getPageSize(),
+                            pageSupport.getNextCursor()
+                            )
+                )
+                .map(e -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(e)
+                );
+    }
+
+    //?fields=nameX,priceX: proyeccion en Mongo; los campos no pedidos quedan null y no se serializan
+    private Set<String> select(String fields) {
+        return ApiFields.select(Dish.class, fields).documentFields();
+    }
+
     private DishDTO convertToDto(Dish model){
-        return mapper.map(model, DishDTO.class);
+        return mapper.toDto(model);
     }
 
     private Dish convertToDocument(DishDTO dto){
-        return mapper.map(dto, Dish.class);
+        return mapper.toDocument(dto);
     }
 }
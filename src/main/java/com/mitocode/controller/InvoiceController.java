@@ -1,24 +1,49 @@
 package com.mitocode.controller;
 
+import com.mitocode.bulk.BulkItemResult;
+import com.mitocode.bulk.BulkResult;
+import com.mitocode.bulk.BulkSupport;
+import com.mitocode.dto.IngestProgressDTO;
 import com.mitocode.dto.InvoiceDTO;
+import com.mitocode.dto.ReportBatchDTO;
+import com.mitocode.mapper.InvoiceMapper;
 import com.mitocode.model.Invoice;
+import com.mitocode.pagination.CursorPageSupport;
 import com.mitocode.pagination.PageSupport;
+import com.mitocode.projection.ApiFields;
+import com.mitocode.projection.FieldSelection;
+import com.mitocode.query.QueryParser;
+import com.mitocode.query.QuerySpec;
 import com.mitocode.service.IInvoiceService;
+import com.mitocode.service.InvoiceExpand;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.Link;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.methodOn;
@@ -28,14 +53,27 @@ import static org.springframework.hateoas.server.reactive.WebFluxLinkBuilder.met
 @RequiredArgsConstructor
 public class InvoiceController {
 
+    //por defecto se resuelve el cliente: la respuesta mantiene nombre y apellido como antes del formato compacto
+    private static final String EXPAND_DEFAULT = "client";
+
     private final IInvoiceService service;
-    @Qualifier("invoiceMapper")
-    private final ModelMapper mapper;
+    private final InvoiceMapper mapper;
+    private final BulkSupport bulkSupport;
+    private final QueryParser queryParser;
+
+    @Value("${app.invoice.ingest.batch-size:500}")
+    private int ingestBatchSize;
+    @Value("${app.invoice.ingest.concurrency:2}")
+    private int ingestConcurrency;
 
     @GetMapping
-    public Mono<ResponseEntity<Flux<InvoiceDTO>>> findAll() {
+    public Mono<ResponseEntity<Flux<InvoiceDTO>>> findAll(@RequestParam(name = "expand", defaultValue = EXPAND_DEFAULT) String expand,
+                                                          @RequestParam(name = "fields", required = false) String fields) {
         //ModelMapper modelMapper = new ModelMapper();
-        Flux<InvoiceDTO> fx = service.findAll().map(this::convertToDto); //e -> convertToDto(e)
+        FieldSelection selection = ApiFields.select(Invoice.class, fields);
+        Set<InvoiceExpand> expandSet = expansions(selection, expand);
+        Flux<InvoiceDTO> fx = service.hydrate(service.findAll(selection.documentFields()), expandSet)
+                .map(e -> convertToDto(e, expandSet));
 
         return Mono.just(ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
@@ -44,10 +82,25 @@ public class InvoiceController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    //Documentos a medida que salen del cursor de Mongo (Accept: application/x-ndjson o text/event-stream)
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<InvoiceDTO> stream(@RequestParam(name = "expand", defaultValue = EXPAND_DEFAULT) String expand,
+                                   @RequestParam(name = "fields", required = false) String fields) {
+        FieldSelection selection = ApiFields.select(Invoice.class, fields);
+        Set<InvoiceExpand> expandSet = expansions(selection, expand);
+        return service.hydrate(service.findAll(selection.documentFields()), expandSet)
+                .map(e -> convertToDto(e, expandSet));
+    }
+
     @GetMapping("/{id}")
-    public Mono<ResponseEntity<InvoiceDTO>> findById(@PathVariable("id") String id) {
-        return service.findById(id)
-                .map(this::convertToDto)
+    public Mono<ResponseEntity<InvoiceDTO>> findById(@PathVariable("id") String id,
+                                                     @RequestParam(name = "expand", defaultValue = EXPAND_DEFAULT) String expand,
+                                                     @RequestParam(name = "fields", required = false) String fields) {
+        FieldSelection selection = ApiFields.select(Invoice.class, fields);
+        Set<InvoiceExpand> expandSet = expansions(selection, expand);
+        return service.findById(id, selection.documentFields())
+                .flatMap(e -> service.hydrate(e, expandSet))
+                .map(e -> convertToDto(e, expandSet))
                 .map(e -> ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(e)
@@ -58,6 +111,7 @@ public class InvoiceController {
     @PostMapping
     public Mono<ResponseEntity<InvoiceDTO>> save(@Valid @RequestBody InvoiceDTO dto, final ServerHttpRequest req) {
         return service.save(convertToDocument(dto))
+                .flatMap(e -> service.hydrate(e, EnumSet.of(InvoiceExpand.CLIENT)))
                 .map(this::convertToDto)
                 .map(e -> ResponseEntity.created(
                                         URI.create(req.getURI().toString().concat("/").concat(e.getId()))
@@ -77,6 +131,7 @@ public class InvoiceController {
                     return e;
                 })
                 .flatMap( e -> service.update(id, convertToDocument(dto)))
+                .flatMap(e -> service.hydrate(e, EnumSet.of(InvoiceExpand.CLIENT)))
                 .map(this::convertToDto)
                 .map(e -> ResponseEntity
                         .ok()
@@ -98,26 +153,99 @@ public class InvoiceController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    @PostMapping("/bulk")
+    public Mono<ResponseEntity<BulkResult>> saveAll(@RequestBody List<InvoiceDTO> dtos) {
+        return bulkSupport.execute(dtos, valid -> service.saveAll(valid.stream().map(this::convertToDocument).toList()))
+                .map(bulkSupport::toResponse);
+    }
+
+    @PutMapping("/bulk")
+    public Mono<ResponseEntity<BulkResult>> bulkUpdate(@RequestBody List<InvoiceDTO> dtos) {
+        return bulkSupport.execute(dtos, valid -> service.bulkUpdate(valid.stream().map(this::convertToDocument).toList()))
+                .map(bulkSupport::toResponse);
+    }
+
+    @PostMapping("/bulk/delete")
+    public Mono<ResponseEntity<BulkResult>> bulkDelete(@RequestBody List<String> ids) {
+        return service.bulkDelete(ids)
+                .map(bulkSupport::toResponse);
+    }
+
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<IngestProgressDTO> ingest(@RequestBody Flux<InvoiceDTO> dtos) {
+        //memoria constante: como maximo ingestConcurrency lotes de ingestBatchSize en vuelo
+        return Flux.defer(() -> {
+            AtomicLong processed = new AtomicLong();
+            AtomicLong succeeded = new AtomicLong();
+            AtomicLong failed = new AtomicLong();
+
+            return dtos.buffer(ingestBatchSize)
+                    .index()
+                    .flatMapSequential(batch -> bulkSupport.execute(batch.getT2(),
+                                            valid -> service.saveAll(valid.stream().map(this::convertToDocument).toList()))
+                                    .map(result -> Tuples.of(batch.getT1(), result)),
+                            ingestConcurrency, 1)
+                    .map(tuple -> {
+                        long batchNumber = tuple.getT1();
+                        BulkResult result = tuple.getT2();
+                        long offset = batchNumber * ingestBatchSize;
+
+                        List<BulkItemResult> errors = result.getItems().stream()
+                                .filter(item -> !item.getStatus().isSuccess())
+                                .map(item -> {
+                                    item.setIndex((int) (offset + item.getIndex()));
+                                    return item;
+                                })
+                                .toList();
+
+                        return new IngestProgressDTO(
+                                batchNumber,
+                                result.getTotal(),
+                                result.getSucceeded(),
+                                result.getFailed(),
+                                processed.addAndGet(result.getTotal()),
+                                succeeded.addAndGet(result.getSucceeded()),
+                                failed.addAndGet(result.getFailed()),
+                                errors
+                        );
+                    });
+        });
+    }
+
     @GetMapping("/hateoas/{id}")
-    public Mono<EntityModel<InvoiceDTO>> getHateoas(@PathVariable("id") String id){
-        Mono<Link> monoLink = linkTo(methodOn(InvoiceController.class).findById(id)).withRel("invoice-info").toMono();
+    public Mono<EntityModel<InvoiceDTO>> getHateoas(@PathVariable("id") String id,
+                                                    @RequestParam(name = "expand", defaultValue = EXPAND_DEFAULT) String expand){
+        Mono<Link> monoLink = linkTo(methodOn(InvoiceController.class).findById(id, expand, null)).withRel("invoice-info").toMono();
+        Set<InvoiceExpand> expandSet = InvoiceExpand.parse(expand);
         return service.findById(id)
-                .map(this::convertToDto)
+                .flatMap(e -> service.hydrate(e, expandSet))
+                .map(e -> convertToDto(e, expandSet))
                 .zipWith(monoLink, EntityModel::of);  //(d, link) -> EntityModel.of(d, link)
     }
 
     @GetMapping("/pageable")
     public Mono<ResponseEntity<PageSupport<InvoiceDTO>>> getPage(
             @RequestParam(name = "page", defaultValue = "0") int page,
-            @RequestParam(name = "size", defaultValue = "2") int size
+            @RequestParam(name = "size", defaultValue = "2") int size,
+            @RequestParam(name = "expand", defaultValue = EXPAND_DEFAULT) String expand,
+            @RequestParam(name = "fields", required = false) String fields,
+            @RequestParam(name = "filter", required = false) List<String> filter,
+            @RequestParam(name = "sort", required = false) String sort
     ){
-        return service.getPage(PageRequest.of(page, size))
-                .map(pageSupport -> new PageSupport<>(
-                            pageSupport.getContent().stream().map(this::convertToDto).toList(),
-                            pageSupport.getPageNumber(),
-                            pageSupport.getPageSize(),
-                            pageSupport.getTotalElements()
-                            )
+        QuerySpec query = queryParser.parse(Invoice.class, filter, sort);
+        FieldSelection selection = ApiFields.select(Invoice.class, fields);
+        Set<InvoiceExpand> expandSet = expansions(selection, expand);
+        return service.getPage(PageRequest.of(page, size, query.sort()), query.criteria(), selection.documentFields())
+                .flatMap(pageSupport -> service.hydrate(Flux.fromIterable(pageSupport.getContent()), expandSet)
+                        .map(e -> convertToDto(e, expandSet))
+                        .collectList()
+                        .map(content -> new PageSupport<>(
+                                content,
+                                pageSupport.getPageNumber(),
+                                pageSupport.getPageSize(),
+                                pageSupport.getTotalElements()
+                                )
+                        )
                 )
                 .map(e -> ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
@@ -126,22 +254,85 @@ public class InvoiceController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/cursor")
+    public Mono<ResponseEntity<CursorPageSupport<InvoiceDTO>>> getCursorPage(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = PageSupport.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(name = "expand", defaultValue = EXPAND_DEFAULT) String expand
+    ){
+        Set<InvoiceExpand> expandSet = InvoiceExpand.parse(expand);
+        return service.getCursorPage(cursor, size)
+                .flatMap(pageSupport -> service.hydrate(Flux.fromIterable(pageSupport.getContent()), expandSet)
+                        .map(e -> convertToDto(e, expandSet))
+                        .collectList()
+                        .map(content -> new CursorPageSupport<>(
+                                content,
+                                pageSupport.getPageSize(),
+                                pageSupport.getNextCursor()
+                                )
+                        )
+                )
+                .map(e -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(e)
+                );
+    }
+
     @GetMapping("/generateReport/{id}")
-    private Mono<ResponseEntity<byte[]>> generateReport(@PathVariable("id") String id)
+    private Mono<ResponseEntity<Flux<DataBuffer>>> generateReport(@PathVariable("id") String id, ServerHttpResponse response)
     {
-        return service.generateReport(id)
-                .map(bytes -> ResponseEntity.ok()
+        return service.generateReportStream(id, response.bufferFactory())
+                .map(pdf -> ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_PDF)
-                        .body(bytes))
+                        .body(pdf))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    //Cierre de mes: un ZIP con un PDF por factura, escrito a medida que se renderizan
+    @PostMapping(value = "/generateReports", produces = "application/zip")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> generateReports(@RequestBody ReportBatchDTO batch, ServerHttpResponse response) {
+        boolean byIds = batch.getIds() != null && !batch.getIds().isEmpty();
+        boolean byFilter = batch.getFilter() != null && !batch.getFilter().isEmpty();
+        //sin ids ni filtro seria la coleccion completa
+        if (!byIds && !byFilter) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids or filter is required"));
+        }
+        List<Criteria> criteria = new ArrayList<>();
+        if (byIds) {
+            criteria.add(Criteria.where("_id").in(batch.getIds().stream()
+                    .map(id -> ObjectId.isValid(id) ? new ObjectId(id) : id)
+                    .toList()));
+        }
+        if (byFilter) {
+            criteria.add(queryParser.parse(Invoice.class, batch.getFilter(), null).criteria());
+        }
+        Criteria filter = criteria.size() == 1 ? criteria.get(0) : new Criteria().andOperator(criteria);
+
+        return service.generateReportZip(filter, response.bufferFactory())
+                .map(zip -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("application/zip"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("invoices.zip").build().toString())
+                        .body(zip))
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    //Con ?fields= solo se resuelven las referencias de las que se pidio algo mas que el _id
+    private Set<InvoiceExpand> expansions(FieldSelection selection, String expand) {
+        return selection.isAll()
+                ? InvoiceExpand.parse(expand)
+                : InvoiceExpand.parse(String.join(",", selection.expansions()));
+    }
 
     private InvoiceDTO convertToDto(Invoice model){
-        return mapper.map(model, InvoiceDTO.class);
+        return mapper.toDto(model);
+    }
+
+    //los datos del plato solo viajan si se resolvieron (?expand=dishes)
+    private InvoiceDTO convertToDto(Invoice model, Set<InvoiceExpand> expand){
+        return expand.contains(InvoiceExpand.DISHES) ? mapper.toExpandedDto(model) : mapper.toDto(model);
     }
 
     private Invoice convertToDocument(InvoiceDTO dto){
-        return mapper.map(dto, Invoice.class);
+        return mapper.toDocument(dto);
     }
 }
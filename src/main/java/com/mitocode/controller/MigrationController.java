@@ -0,0 +1,28 @@
+package com.mitocode.controller;
+
+import com.mitocode.dto.MigrationResultDTO;
+import com.mitocode.service.IInvoiceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/admin/migrations")
+@RequiredArgsConstructor
+public class MigrationController {
+
+    private final IInvoiceService invoiceService;
+
+    //Idempotente: solo toca facturas que aun tienen cliente/platos embebidos
+    @PostMapping("/invoices/compact")
+    public Mono<ResponseEntity<MigrationResultDTO>> compactInvoices() {
+        return invoiceService.compactStoredInvoices()
+                .map(result -> new MigrationResultDTO("invoices-compact", result.getMatchedCount(), result.getModifiedCount()))
+                .map(e -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(e)
+                );
+    }
+}
@@ -0,0 +1,125 @@
+package com.mitocode.controller;
+
+import com.mitocode.dto.ClientSalesDTO;
+import com.mitocode.dto.DishSalesDTO;
+import com.mitocode.dto.SalesPeriodDTO;
+import com.mitocode.dto.SalesRollupDTO;
+import com.mitocode.model.SalesRollup;
+import com.mitocode.service.IInvoiceService;
+import com.mitocode.service.ISalesRollupService;
+import com.mitocode.service.RollupType;
+import com.mitocode.service.SalesPeriod;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+//Ventas agregadas en Mongo: la respuesta sale fila por fila del cursor del aggregate (JSON o NDJSON segun Accept).
+//from/to son fechas (from inclusivo, to exclusivo) en la zona indicada; la fecha de una factura es la de su _id.
+@RestController
+@RequestMapping("/invoices/sales")
+@RequiredArgsConstructor
+public class SalesController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final IInvoiceService service;
+    private final ISalesRollupService rollups;
+
+    @Value("${app.sales.zone:UTC}")
+    private String defaultZone;
+
+    @GetMapping(value = "/dishes", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<DishSalesDTO> salesByDish(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "limit", defaultValue = "50") int limit,
+            @RequestParam(name = "zone", required = false) String zone
+    ){
+        ZoneId zoneId = zone(zone);
+        return service.salesByDish(start(from, zoneId), start(to, zoneId), limit(limit));
+    }
+
+    @GetMapping(value = "/clients", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<ClientSalesDTO> topClients(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "limit", defaultValue = "10") int limit,
+            @RequestParam(name = "zone", required = false) String zone
+    ){
+        ZoneId zoneId = zone(zone);
+        return service.topClients(start(from, zoneId), start(to, zoneId), limit(limit));
+    }
+
+    @GetMapping(value = "/periods", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<SalesPeriodDTO> salesByPeriod(
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "unit", defaultValue = "day") String unit,
+            @RequestParam(name = "zone", required = false) String zone
+    ){
+        ZoneId zoneId = zone(zone);
+        return service.salesByPeriod(start(from, zoneId), start(to, zoneId), SalesPeriod.parse(unit), zoneId);
+    }
+
+    //Rollups precalculados (SalesRollupListener): lecturas por indice, sin recorrer facturas.
+    //type = dish | client | day; para day con from/to devuelve el rango ordenado por fecha
+    @GetMapping(value = "/rollups/{type}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<SalesRollupDTO> rollups(
+            @PathVariable("type") String type,
+            @RequestParam(name = "limit", defaultValue = "10") int limit,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ){
+        RollupType rollupType = RollupType.parse(type);
+        Flux<SalesRollup> result = rollupType == RollupType.DAY && (from != null || to != null)
+                ? rollups.days(from, to)
+                : rollups.top(rollupType, limit(limit));
+        return result.map(this::convertToDto);
+    }
+
+    @GetMapping("/rollups/{type}/{key}")
+    public Mono<ResponseEntity<SalesRollupDTO>> rollup(@PathVariable("type") String type, @PathVariable("key") String key) {
+        return rollups.findOne(RollupType.parse(type), key)
+                .map(this::convertToDto)
+                .map(e -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(e)
+                )
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    private SalesRollupDTO convertToDto(SalesRollup rollup) {
+        return new SalesRollupDTO(rollup.getType(), rollup.getKey(), rollup.getInvoices(), rollup.getQuantity(), rollup.getRevenue());
+    }
+
+    private ZoneId zone(String zone) {
+        try {
+            return ZoneId.of(zone == null || zone.isBlank() ? defaultZone : zone);
+        } catch (DateTimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown zone: " + zone);
+        }
+    }
+
+    private static Instant start(LocalDate date, ZoneId zone) {
+        return date == null ? null : date.atStartOfDay(zone).toInstant();
+    }
+
+    private static int limit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+}
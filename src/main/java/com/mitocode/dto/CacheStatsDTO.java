@@ -0,0 +1,21 @@
+package com.mitocode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatsDTO {
+
+    private String name;
+    private String mode;
+    private long maxSize;
+    private long ttlSeconds;
+    private long size;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+}
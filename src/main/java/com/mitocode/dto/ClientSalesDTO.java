@@ -0,0 +1,18 @@
+package com.mitocode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ClientSalesDTO {
+
+    private String clientId;
+    private String nameClient;
+    private String surnameClient;
+    private long invoices;
+    private long quantity;
+    private double revenue;
+}
@@ -0,0 +1,18 @@
+package com.mitocode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DishSalesDTO {
+
+    private String dishId;
+    private String nameDish;
+    //lineas de factura con el plato (normalmente una por factura)
+    private long lines;
+    private long quantity;
+    private double revenue;
+}
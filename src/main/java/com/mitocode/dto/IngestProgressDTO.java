@@ -0,0 +1,27 @@
+package com.mitocode.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mitocode.bulk.BulkItemResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class IngestProgressDTO {
+
+    private long batch;
+    private int batchSize;
+    private int batchSucceeded;
+    private int batchFailed;
+    //acumulados desde el inicio del stream
+    private long processed;
+    private long succeeded;
+    private long failed;
+    //solo los items que fallaron; index = posicion (linea) en el stream recibido
+    private List<BulkItemResult> errors;
+}
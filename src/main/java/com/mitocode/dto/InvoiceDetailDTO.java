@@ -11,6 +11,7 @@ import lombok.NoArgsConstructor;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class InvoiceDetailDTO {
 
-    private int quantity;
+    private Integer quantity;
     private DishDTO dish;
+    private Double price;
 }
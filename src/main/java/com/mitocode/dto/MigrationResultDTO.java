@@ -0,0 +1,15 @@
+package com.mitocode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MigrationResultDTO {
+
+    private String migration;
+    private long matched;
+    private long modified;
+}
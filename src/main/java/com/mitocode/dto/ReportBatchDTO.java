@@ -0,0 +1,17 @@
+package com.mitocode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+//Facturas de un lote de PDFs: por ids, por filtro (misma sintaxis que ?filter= de /pageable) o ambos
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReportBatchDTO {
+
+    private List<String> ids;
+    private List<String> filter;
+}
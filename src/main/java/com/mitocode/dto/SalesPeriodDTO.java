@@ -0,0 +1,17 @@
+package com.mitocode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesPeriodDTO {
+
+    //2024-03-15 (day), 2024-W11 (week), 2024-03 (month)
+    private String period;
+    private long invoices;
+    private long quantity;
+    private double revenue;
+}
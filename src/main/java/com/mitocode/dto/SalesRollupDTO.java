@@ -0,0 +1,19 @@
+package com.mitocode.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesRollupDTO {
+
+    //dish | client | day
+    private String type;
+    //_id del plato o cliente, o fecha 2024-03-15
+    private String key;
+    private long invoices;
+    private long quantity;
+    private double revenue;
+}
@@ -0,0 +1,23 @@
+package com.mitocode.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+//503 con cabecera Retry-After para que el cliente reintente mas tarde
+public class ServiceBusyException extends ResponseStatusException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String reason, long retryAfterSeconds, Throwable cause) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return headers;
+    }
+}
@@ -1,5 +1,6 @@
 package com.mitocode.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.autoconfigure.web.WebProperties;
 import org.springframework.boot.autoconfigure.web.reactive.error.AbstractErrorWebExceptionHandler;
 import org.springframework.boot.web.error.ErrorAttributeOptions;
@@ -9,6 +10,7 @@ import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.ErrorResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.BodyInserters;
@@ -22,9 +24,12 @@ import java.util.Map;
 @Order(-1) //Ordered.HIGHEST_PRECEDENCE
 public class WebExceptionHandler extends AbstractErrorWebExceptionHandler {
 
-    public WebExceptionHandler(ErrorAttributes errorAttributes, WebProperties.Resources resources, ApplicationContext applicationContext, ServerCodecConfigurer configurer) {
+    private final MeterRegistry meterRegistry;
+
+    public WebExceptionHandler(ErrorAttributes errorAttributes, WebProperties.Resources resources, ApplicationContext applicationContext, ServerCodecConfigurer configurer, MeterRegistry meterRegistry) {
         super(errorAttributes, resources, applicationContext);
         this.setMessageWriters(configurer.getWriters());
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -57,6 +62,16 @@ public class WebExceptionHandler extends AbstractErrorWebExceptionHandler {
                 customError.put("status", 401);
                 status = HttpStatus.UNAUTHORIZED;
             }
+            case "503" -> {
+                customError.put("message", error.getMessage());
+                customError.put("status", 503);
+                status = HttpStatus.SERVICE_UNAVAILABLE;
+            }
+            case "504" -> {
+                customError.put("message", error.getMessage());
+                customError.put("status", 504);
+                status = HttpStatus.GATEWAY_TIMEOUT;
+            }
             case "500" -> {
                 customError.put("message", error.getMessage());
                 customError.put("status", 500);
@@ -70,7 +85,18 @@ public class WebExceptionHandler extends AbstractErrorWebExceptionHandler {
 
         }
 
+        //http.server.errors{status, exception}: status es el que recibe el cliente tras el mapeo
+        meterRegistry.counter("http.server.errors",
+                "status", String.valueOf(status.value()),
+                "exception", error.getClass().getSimpleName()).increment();
+
         return ServerResponse.status(status)
+                .headers(headers -> {
+                    //p.e. Retry-After de ServiceBusyException
+                    if (error instanceof ErrorResponse errorResponse) {
+                        headers.addAll(errorResponse.getHeaders());
+                    }
+                })
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(BodyInserters.fromValue(customError));
     }
@@ -0,0 +1,22 @@
+package com.mitocode.mapper;
+
+import com.mitocode.dto.ClientDTO;
+import com.mitocode.model.Client;
+import org.mapstruct.InheritInverseConfiguration;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface ClientMapper {
+
+    //Lectura
+    @Mapping(target = "nameClient", source = "firstName")
+    @Mapping(target = "surnameClient", source = "lastName")
+    @Mapping(target = "birthDateClient", source = "birthDate")
+    @Mapping(target = "urlPhotoClient", source = "urlPhoto")
+    ClientDTO toDto(Client model);
+
+    //Escritura
+    @InheritInverseConfiguration
+    Client toDocument(ClientDTO dto);
+}
@@ -0,0 +1,21 @@
+package com.mitocode.mapper;
+
+import com.mitocode.dto.DishDTO;
+import com.mitocode.model.Dish;
+import org.mapstruct.InheritInverseConfiguration;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface DishMapper {
+
+    //Lectura
+    @Mapping(target = "nameDish", source = "name")
+    @Mapping(target = "priceDish", source = "price")
+    @Mapping(target = "statusDish", source = "status")
+    DishDTO toDto(Dish model);
+
+    //Escritura
+    @InheritInverseConfiguration
+    Dish toDocument(DishDTO dto);
+}
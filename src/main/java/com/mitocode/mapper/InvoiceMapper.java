@@ -0,0 +1,72 @@
+package com.mitocode.mapper;
+
+import com.mitocode.dto.ClientDTO;
+import com.mitocode.dto.DishDTO;
+import com.mitocode.dto.InvoiceDTO;
+import com.mitocode.dto.InvoiceDetailDTO;
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import com.mitocode.model.InvoiceDetail;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.Named;
+
+//Mismo resultado que el invoiceMapper STRICT de MapperConfig: el cliente viaja con id, nombre
+//y apellido; el plato de cada item solo con su id. Con ?expand=dishes se usa toExpandedDto.
+@Mapper(componentModel = "spring")
+public interface InvoiceMapper {
+
+    //Lectura get
+    InvoiceDTO toDto(Invoice model);
+
+    //Lectura con ?expand=dishes: ademas del id, los datos del plato resuelto
+    default InvoiceDTO toExpandedDto(Invoice model) {
+        InvoiceDTO dto = toDto(model);
+        if (dto != null && dto.getItems() != null) {
+            for (int i = 0; i < dto.getItems().size(); i++) {
+                InvoiceDetail item = model.getItems().get(i);
+                if (dto.getItems().get(i) != null && item != null) {
+                    dto.getItems().get(i).setDish(dishDetailToDto(item.getDish()));
+                }
+            }
+        }
+        return dto;
+    }
+
+    //Escritura post
+    Invoice toDocument(InvoiceDTO dto);
+
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    @Mapping(target = "nameClient", source = "firstName")
+    @Mapping(target = "surnameClient", source = "lastName")
+    ClientDTO clientToDto(Client client);
+
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    @Mapping(target = "firstName", source = "nameClient")
+    @Mapping(target = "lastName", source = "surnameClient")
+    Client clientToDocument(ClientDTO dto);
+
+    InvoiceDetailDTO itemToDto(InvoiceDetail item);
+
+    //el precio cobrado lo fija el servicio a partir del plato; el que venga en la peticion no se usa
+    @Mapping(target = "price", ignore = true)
+    InvoiceDetail itemToDocument(InvoiceDetailDTO dto);
+
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    DishDTO dishToDto(Dish dish);
+
+    @Named("dishDetail")
+    @Mapping(target = "nameDish", source = "name")
+    @Mapping(target = "priceDish", source = "price")
+    @Mapping(target = "statusDish", source = "status")
+    DishDTO dishDetailToDto(Dish dish);
+
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    Dish dishToDocument(DishDTO dto);
+}
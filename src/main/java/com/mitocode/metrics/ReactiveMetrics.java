@@ -0,0 +1,53 @@
+package com.mitocode.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+
+//Timers para Mono/Flux: miden desde la suscripcion hasta la señal final (no el armado del pipeline)
+//y etiquetan outcome = success | error | cancelled.
+public final class ReactiveMetrics {
+
+    //rango acotado: menos buckets por timer en el histograma de Prometheus
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(30);
+
+    private ReactiveMetrics() {
+    }
+
+    public static <T> Mono<T> timed(Mono<T> mono, MeterRegistry registry, String name, String... tags) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return mono.doFinally(signal -> sample.stop(timer(registry, name, outcome(signal), tags)));
+        });
+    }
+
+    public static <T> Flux<T> timed(Flux<T> flux, MeterRegistry registry, String name, String... tags) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return flux.doFinally(signal -> sample.stop(timer(registry, name, outcome(signal), tags)));
+        });
+    }
+
+    public static Timer timer(MeterRegistry registry, String name, String outcome, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(registry);
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_ERROR -> "error";
+            case CANCEL -> "cancelled";
+            default -> "success";
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.mitocode.metrics;
+
+import com.mitocode.repo.IGenericRepo;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+//Envuelve los repositorios reactivos para medir la latencia real de Mongo por metodo.
+//Las metricas de repositorio de Spring Boot solo miden la creacion del Mono/Flux, no su ejecucion.
+@Component
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    //ObjectProvider: el registry se resuelve en la primera llamada y no fuerza su creacion temprana
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof IGenericRepo<?, ?>)) {
+            return bean;
+        }
+
+        String repository = repositoryName(bean);
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.addAdvice((MethodInterceptor) invocation -> {
+            Object result = invocation.proceed();
+            String[] tags = {"repository", repository, "method", invocation.getMethod().getName()};
+            if (result instanceof Mono<?> mono) {
+                return ReactiveMetrics.timed(mono, registry.getObject(), "mongo.repository", tags);
+            }
+            if (result instanceof Flux<?> flux) {
+                return ReactiveMetrics.timed(flux, registry.getObject(), "mongo.repository", tags);
+            }
+            return result;
+        });
+        return factory.getProxy();
+    }
+
+    private static String repositoryName(Object target) {
+        for (Class<?> type : target.getClass().getInterfaces()) {
+            if (IGenericRepo.class.isAssignableFrom(type) && type != IGenericRepo.class) {
+                return type.getSimpleName();
+            }
+        }
+        return target.getClass().getSimpleName();
+    }
+}
@@ -5,11 +5,13 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
+import com.mitocode.projection.ApiField;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -20,21 +22,28 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Document(collection = "clients")
+//_id al final: desempate unico para paginar ordenado por apellido/nombre
+@CompoundIndex(name = "last_first_name_id_idx", def = "{'lastName': 1, 'firstName': 1, '_id': 1}")
 public class Client {
 
     @Id
     @EqualsAndHashCode.Include
+    @ApiField(value = "id", filterable = true, sortable = true)
     private String id;
 
     @Field
+    @ApiField(value = "nameClient", sortable = true)
     private String firstName;
 
     @Field
+    @ApiField(value = "surnameClient", filterable = true, sortable = true)
     private String lastName;
 
     @Field
+    @ApiField("birthDateClient")
     private LocalDate birthDate;
 
     @Field
+    @ApiField("urlPhotoClient")
     private String urlPhoto;
 }
@@ -1,11 +1,13 @@
 package com.mitocode.model;
 
 
+import com.mitocode.projection.ApiField;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -14,18 +16,24 @@ import org.springframework.data.mongodb.core.mapping.Field;
 @NoArgsConstructor
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Document(collection = "dishes")
+//_id al final: desempate unico para paginar ordenado por estado/nombre
+@CompoundIndex(name = "status_name_id_idx", def = "{'status': 1, 'name': 1, '_id': 1}")
 public class Dish {
 
     @Id
     @EqualsAndHashCode.Include
+    @ApiField(value = "id", filterable = true, sortable = true)
     private String id;
 
     @Field
+    @ApiField(value = "nameDish", sortable = true)
     private String name;
 
     @Field
+    @ApiField("priceDish")
     private Double price;
 
     @Field
+    @ApiField(value = "statusDish", filterable = true, sortable = true)
     private Boolean status;
 }
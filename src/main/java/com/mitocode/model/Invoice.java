@@ -1,10 +1,12 @@
 package com.mitocode.model;
 
+import com.mitocode.projection.ApiField;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -15,18 +17,24 @@ import java.util.List;
 @NoArgsConstructor
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Document(collection = "invoices")
+@CompoundIndex(name = "client_id_id_idx", def = "{'client._id': 1, '_id': 1}")
+@CompoundIndex(name = "items_dish_id_idx", def = "{'items.dish._id': 1}")
 public class Invoice {
 
     @Id
     @EqualsAndHashCode.Include
+    @ApiField(value = "id", filterable = true, sortable = true)
     private String id;
 
     @Field
+    @ApiField("description")
     private String description;
 
     @Field
+    @ApiField(value = "client", expand = "client")
     private Client client;
 
     @Field
+    @ApiField("items")
     private List<InvoiceDetail> items;
 }
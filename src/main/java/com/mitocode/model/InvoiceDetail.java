@@ -1,5 +1,6 @@
 package com.mitocode.model;
 
+import com.mitocode.projection.ApiField;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,6 +10,12 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class InvoiceDetail {
 
-    private int quantity;
+    @ApiField("quantity")
+    private Integer quantity;
+    //en Mongo solo se guarda dish._id; la factura no cambia si el plato cambia de precio
+    @ApiField(value = "dish", expand = "dishes")
     private Dish dish;
+    //precio cobrado (snapshot del precio del plato al facturar)
+    @ApiField("price")
+    private Double price;
 }
@@ -0,0 +1,80 @@
+package com.mitocode.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.List;
+
+//Lo que una factura aporto a los rollups (_id = _id de la factura). Al cambiar o borrar la factura se aplica
+//la diferencia contra este documento, asi reprocesar un evento no vuelve a sumar.
+//En modo polling (sin transaccion) la contribucion se guarda antes que los rollups, con la marca pending y los
+//incrementos pendientes; si el proceso cae a medias la siguiente reconciliacion termina esos mismos incrementos.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "sales_contributions")
+public class SalesContribution {
+
+    @Id
+    private String id;
+
+    @Field
+    private String client;
+
+    @Field
+    private String day;
+
+    @Field
+    private long quantity;
+
+    @Field
+    private double revenue;
+
+    @Field
+    private List<DishLine> dishes;
+
+    //Marca de una aplicacion sin terminar (null = rollups al dia); no forma parte del aporte
+    @Field
+    @EqualsAndHashCode.Exclude
+    private String pending;
+
+    @Field
+    @EqualsAndHashCode.Exclude
+    private List<Increment> increments;
+
+    //La factura ya no existe: se borra la contribucion al terminar de aplicar los incrementos
+    @Field
+    @EqualsAndHashCode.Exclude
+    private boolean deleted;
+
+    public SalesContribution(String id, String client, String day, long quantity, double revenue, List<DishLine> dishes) {
+        this(id, client, day, quantity, revenue, dishes, null, null, false);
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class DishLine {
+
+        private String dish;
+        private long quantity;
+        private double revenue;
+    }
+
+    //Diferencia a sumar en un rollup (_id = "dish:<id>", "client:<id>", "day:2024-03-15")
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Increment {
+
+        private String rollup;
+        private long invoices;
+        private long quantity;
+        private double revenue;
+    }
+}
@@ -0,0 +1,41 @@
+package com.mitocode.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+//Totales de ventas precalculados: un documento por plato, cliente o dia (_id = "dish:<id>", "client:<id>", "day:2024-03-15")
+//En modo polling el documento lleva ademas ops: marcas de las aplicaciones en curso (ver SalesContribution.pending)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Document(collection = "sales_rollups")
+@CompoundIndex(name = "type_revenue_idx", def = "{'type': 1, 'revenue': -1}")
+@CompoundIndex(name = "type_key_idx", def = "{'type': 1, 'key': 1}")
+public class SalesRollup {
+
+    @Id
+    @EqualsAndHashCode.Include
+    private String id;
+
+    @Field
+    private String type;
+
+    @Field
+    private String key;
+
+    @Field
+    private long invoices;
+
+    @Field
+    private long quantity;
+
+    @Field
+    private double revenue;
+}
@@ -0,0 +1,114 @@
+package com.mitocode.mongo;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.reactivestreams.client.MongoClient;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+//Solo desarrollo: por cada forma de consulta nueva pide a Mongo el plan (explain queryPlanner, no ejecuta)
+//y avisa si alguna etapa es un COLLSCAN. El explain va en segundo plano, la consulta original no espera.
+@Slf4j
+public class CollscanCommandListener implements CommandListener {
+
+    private static final Set<String> EXPLAINABLE = Set.of("find", "count", "distinct", "aggregate", "findAndModify", "update", "delete");
+    //campos de sesion/transporte que explain no acepta dentro del comando
+    private static final Set<String> TRANSPORT_FIELDS = Set.of("lsid", "txnNumber", "autocommit", "startTransaction");
+
+    private final ObjectProvider<MongoClient> mongoClient;
+    private final Map<String, Boolean> seenShapes = new ConcurrentHashMap<>();
+
+    public CollscanCommandListener(ObjectProvider<MongoClient> mongoClient) {
+        this.mongoClient = mongoClient;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        String commandName = event.getCommandName();
+        if (!EXPLAINABLE.contains(commandName)) {
+            return;
+        }
+
+        //el documento del evento solo es valido durante la llamada: se copia antes de usarlo en otro hilo
+        BsonDocument command = event.getCommand().clone();
+        BsonValue target = command.get(commandName);
+        if (target == null || !target.isString()) {
+            return;
+        }
+        //findAll sin filtro ni orden es un recorrido completo intencional
+        if (isUnfilteredFind(commandName, command)) {
+            return;
+        }
+
+        String collection = target.asString().getValue();
+        String shape = commandName + " " + collection + " " + shape(stripTransport(command));
+        if (seenShapes.putIfAbsent(shape, Boolean.TRUE) != null) {
+            return;
+        }
+
+        BsonDocument explain = new BsonDocument("explain", stripTransport(command))
+                .append("verbosity", new BsonString("queryPlanner"));
+
+        Mono.from(mongoClient.getObject().getDatabase(event.getDatabaseName()).runCommand(explain, BsonDocument.class))
+                .subscribe(plan -> {
+                    if (hasCollscan(plan)) {
+                        log.warn("COLLSCAN on {}.{}: {} - add an index or change the query", event.getDatabaseName(), collection, shape);
+                    }
+                }, e -> log.debug("Could not explain {}: {}", shape, e.getMessage()));
+    }
+
+    private static boolean isUnfilteredFind(String commandName, BsonDocument command) {
+        return commandName.equals("find")
+                && command.getDocument("filter", new BsonDocument()).isEmpty()
+                && command.getDocument("sort", new BsonDocument()).isEmpty();
+    }
+
+    private static BsonDocument stripTransport(BsonDocument command) {
+        BsonDocument stripped = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (!key.startsWith("$") && !TRANSPORT_FIELDS.contains(key)) {
+                stripped.append(key, value);
+            }
+        });
+        return stripped;
+    }
+
+    //la forma de la consulta sin valores: {status: ?, name: ?} se explica una sola vez
+    private static String shape(BsonValue value) {
+        if (value.isDocument()) {
+            return value.asDocument().entrySet().stream()
+                    .map(e -> e.getKey() + ":" + shape(e.getValue()))
+                    .collect(Collectors.joining(",", "{", "}"));
+        }
+        if (value.isArray()) {
+            BsonArray array = value.asArray();
+            return array.stream().map(CollscanCommandListener::shape).distinct().collect(Collectors.joining(",", "[", "]"));
+        }
+        return "?";
+    }
+
+    private static boolean hasCollscan(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument document = value.asDocument();
+            BsonValue stage = document.get("stage");
+            if (stage != null && stage.isString() && stage.asString().getValue().equals("COLLSCAN")) {
+                return true;
+            }
+            //los planes descartados pueden ser COLLSCAN aunque el ganador use un indice
+            return document.entrySet().stream()
+                    .filter(e -> !e.getKey().equals("rejectedPlans"))
+                    .anyMatch(e -> hasCollscan(e.getValue()));
+        }
+        return value.isArray() && value.asArray().stream().anyMatch(CollscanCommandListener::hasCollscan);
+    }
+}
@@ -0,0 +1,104 @@
+package com.mitocode.mongo;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+//Crea y verifica al arrancar los indices declarados con @Indexed/@CompoundIndex en cada @Document.
+//Reemplaza spring.data.mongodb.auto-index-creation: ese mecanismo tambien replica los indices de los
+//documentos embebidos (p.e. dishes.status_name_id_idx como invoices.items.dish.status_name_id_idx).
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexManager {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Value("${app.mongo.indexes.create:true}")
+    private boolean createIndexes;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Flux.fromIterable(documentEntities())
+                .concatMap(entity -> {
+                    ReactiveIndexOperations ops = mongoTemplate.indexOps(entity.getType());
+                    List<IndexDefinition> declared = declaredIndexes(entity);
+                    Mono<Void> create = createIndexes
+                            ? Flux.fromIterable(declared).concatMap(index -> ensure(ops, entity, index)).then()
+                            : Mono.empty();
+                    return create.then(verify(ops, entity, declared));
+                })
+                .subscribe(null, e -> log.error("Could not verify Mongo indexes", e));
+    }
+
+    public List<MongoPersistentEntity<?>> documentEntities() {
+        return mongoTemplate.getConverter().getMappingContext().getPersistentEntities().stream()
+                .filter(entity -> entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class))
+                .toList();
+    }
+
+    public List<IndexDefinition> declaredIndexes(MongoPersistentEntity<?> entity) {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        //los indices heredados de un tipo embebido llevan la ruta como prefijo en el nombre (client.xxx, items.dish.xxx)
+        return StreamSupport.stream(resolver.resolveIndexFor(entity.getTypeInformation()).spliterator(), false)
+                .map(IndexDefinition.class::cast)
+                .filter(index -> !name(index).contains("."))
+                .toList();
+    }
+
+    private Mono<Void> ensure(ReactiveIndexOperations ops, MongoPersistentEntity<?> entity, IndexDefinition index) {
+        return ops.ensureIndex(index)
+                .doOnNext(name -> log.debug("Index {} ensured on {}", name, entity.getCollection()))
+                //p.e. un unique con duplicados: se informa y la verificacion lo marcara como faltante
+                .onErrorResume(e -> {
+                    log.error("Could not create index {} on {}: {}", name(index), entity.getCollection(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Void> verify(ReactiveIndexOperations ops, MongoPersistentEntity<?> entity, List<IndexDefinition> declared) {
+        return ops.getIndexInfo()
+                .map(MongoIndexManager::keys)
+                .collect(Collectors.toSet())
+                .doOnNext(existing -> declared.stream()
+                        .filter(index -> !existing.contains(keys(index.getIndexKeys())))
+                        .forEach(index -> log.warn("Missing index {} {} on collection {}",
+                                name(index), index.getIndexKeys().toJson(), entity.getCollection())))
+                .then();
+    }
+
+    private static String name(IndexDefinition index) {
+        String name = index.getIndexOptions().getString("name");
+        return name == null ? "" : name;
+    }
+
+    //misma representacion para lo declarado y lo existente: "campo:1,campo:-1"
+    private static String keys(IndexInfo info) {
+        return info.getIndexFields().stream()
+                .map(field -> field.getKey() + ":" + (field.getDirection() == null ? "special" : field.getDirection().isAscending() ? 1 : -1))
+                .collect(Collectors.joining(","));
+    }
+
+    private static String keys(Document indexKeys) {
+        return indexKeys.entrySet().stream()
+                .map(e -> e.getKey() + ":" + (e.getValue() instanceof Number n ? (n.intValue() >= 0 ? 1 : -1) : "special"))
+                .collect(Collectors.joining(","));
+    }
+}
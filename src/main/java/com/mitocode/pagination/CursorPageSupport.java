@@ -0,0 +1,26 @@
+package com.mitocode.pagination;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPageSupport<T> {
+
+    private List<T> content;
+    private int pageSize;
+    //token opaco para pedir la siguiente pagina, null en la ultima
+    private String nextCursor;
+
+    @JsonProperty
+    public boolean last() {
+        return nextCursor == null;
+    }
+}
@@ -0,0 +1,40 @@
+package com.mitocode.pagination;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//Posicion de la ultima fila entregada: valor de la clave de orden + _id como desempate
+public record CursorToken(String key, Sort.Direction direction, Object value, Object id) {
+
+    public String encode() {
+        Document doc = new Document("k", key)
+                .append("d", direction.name())
+                .append("v", value)
+                .append("id", id);
+        //Extended JSON conserva ObjectId, fechas y numeros al volver a leerlo
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(doc.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CursorToken decode(String token, Sort.Order expected) {
+        try {
+            Document doc = Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            CursorToken cursor = new CursorToken(doc.getString("k"), Sort.Direction.fromString(doc.getString("d")),
+                    doc.get("v"), doc.get("id"));
+
+            if (!expected.getProperty().equals(cursor.key()) || expected.getDirection() != cursor.direction()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor does not match the current sort");
+            }
+            return cursor;
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.mitocode.projection;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Nombre del campo en el DTO; solo los campos anotados se pueden pedir con ?fields=, ?filter= y ?sort=
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ApiField {
+
+    String value();
+
+    //Referencia a otro documento (solo se guarda su _id): pedir cualquier otro campo
+    //proyecta el _id y exige resolver la referencia (InvoiceExpand)
+    String expand() default "";
+
+    //Se puede usar en ?filter= (debe ser el prefijo de un indice para no recorrer la coleccion)
+    boolean filterable() default false;
+
+    //Se puede usar en ?sort=; QueryParser ademas exige un indice que respalde el orden
+    boolean sortable() default false;
+}
@@ -0,0 +1,137 @@
+package com.mitocode.projection;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Traduce rutas del DTO (client.nameClient) a rutas del documento (client.firstName) a partir de @ApiField.
+//El mapa de cada documento se arma una sola vez por reflexion y queda en cache.
+public final class ApiFields {
+
+    private static final Map<Class<?>, Map<String, ApiPath>> PATHS = new ConcurrentHashMap<>();
+
+    private ApiFields() {
+    }
+
+    /**
+     * @param fields lista separada por comas de campos del DTO; null o vacio = documento completo
+     */
+    public static FieldSelection select(Class<?> documentType, String fields) {
+        if (!StringUtils.hasText(fields)) {
+            return FieldSelection.ALL;
+        }
+
+        Map<String, ApiPath> paths = paths(documentType);
+        Set<String> documentFields = new LinkedHashSet<>();
+        Set<String> expansions = new LinkedHashSet<>();
+        //_id siempre: lo necesitan los enlaces, el cursor y la resolucion de referencias
+        documentFields.add("_id");
+
+        Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .forEach(field -> {
+                    ApiPath path = paths.get(field);
+                    if (path == null) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field: " + field);
+                    }
+                    documentFields.add(path.documentPath());
+                    if (path.expand() != null) {
+                        expansions.add(path.expand());
+                    }
+                });
+
+        return new FieldSelection(withoutCollisions(documentFields), Set.copyOf(expansions));
+    }
+
+    //Mongo rechaza proyectar "client" y "client._id" a la vez (path collision): gana el mas general
+    private static Set<String> withoutCollisions(Set<String> documentFields) {
+        Set<String> result = new LinkedHashSet<>();
+        documentFields.stream()
+                .filter(path -> documentFields.stream().noneMatch(other -> path.startsWith(other + ".")))
+                .forEach(result::add);
+        return Set.copyOf(result);
+    }
+
+    public static Map<String, ApiPath> paths(Class<?> documentType) {
+        return PATHS.computeIfAbsent(documentType, type -> {
+            Map<String, ApiPath> paths = new LinkedHashMap<>();
+            collect(type, "", "", null, false, paths);
+            return Map.copyOf(paths);
+        });
+    }
+
+    private static void collect(Class<?> type, String apiPrefix, String documentPrefix, String referenceExpand,
+                                boolean inArray, Map<String, ApiPath> paths) {
+        ReflectionUtils.doWithFields(type, field -> {
+            ApiField apiField = field.getAnnotation(ApiField.class);
+            String apiPath = apiPrefix + apiField.value();
+            String documentPath = documentPrefix + documentName(field);
+            Class<?> valueType = valueType(field);
+            boolean array = inArray || Collection.class.isAssignableFrom(field.getType());
+            //ordenar por un campo dentro de un arreglo no tiene un orden unico por documento
+            boolean sortable = apiField.sortable() && !array;
+
+            if (isApiType(valueType)) {
+                String expand = apiField.expand().isEmpty() ? referenceExpand : apiField.expand();
+                paths.put(apiPath, new ApiPath(documentPath, expand, valueType, false, false));
+                collect(valueType, apiPath + ".", documentPath + ".", expand, array, paths);
+            } else if (referenceExpand != null && field.isAnnotationPresent(Id.class)) {
+                //el _id de una referencia esta guardado: no hace falta resolverla
+                paths.put(apiPath, new ApiPath(documentPath, null, valueType, apiField.filterable(), sortable));
+            } else if (referenceExpand != null) {
+                //otros campos de una referencia: se proyecta su _id y se resuelve despues (no se puede filtrar ni ordenar)
+                paths.put(apiPath, new ApiPath(documentPrefix + "_id", referenceExpand, valueType, false, false));
+            } else {
+                paths.put(apiPath, new ApiPath(documentPath, null, valueType, apiField.filterable(), sortable));
+            }
+        }, field -> field.isAnnotationPresent(ApiField.class));
+    }
+
+    private static String documentName(java.lang.reflect.Field field) {
+        if (field.isAnnotationPresent(Id.class)) {
+            return "_id";
+        }
+        Field mongoField = field.getAnnotation(Field.class);
+        return mongoField != null && StringUtils.hasText(mongoField.value()) ? mongoField.value() : field.getName();
+    }
+
+    //para List<InvoiceDetail> se recorre InvoiceDetail (Mongo proyecta items.x sobre cada elemento)
+    private static Class<?> valueType(java.lang.reflect.Field field) {
+        if (Collection.class.isAssignableFrom(field.getType())) {
+            Class<?> element = ResolvableType.forField(field).asCollection().resolveGeneric(0);
+            return element != null ? element : Object.class;
+        }
+        return field.getType();
+    }
+
+    private static boolean isApiType(Class<?> type) {
+        return Arrays.stream(type.getDeclaredFields()).anyMatch(field -> field.isAnnotationPresent(ApiField.class));
+    }
+
+    /**
+     * @param documentPath ruta a proyectar en Mongo
+     * @param expand       referencia a resolver para tener el valor, o null
+     * @param type         tipo del valor (o del elemento si es una lista)
+     * @param filterable   se puede usar en ?filter=
+     * @param sortable     se puede usar en ?sort=
+     */
+    public record ApiPath(String documentPath, String expand, Class<?> type, boolean filterable, boolean sortable) {
+
+        public boolean isId() {
+            return documentPath.equals("_id") || documentPath.endsWith("._id");
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.mitocode.projection;
+
+import java.util.Set;
+
+/**
+ * Resultado de ?fields=: campos del documento a proyectar en Mongo y referencias que hay que resolver.
+ * Sin documentFields se lee el documento completo.
+ */
+public record FieldSelection(Set<String> documentFields, Set<String> expansions) {
+
+    public static final FieldSelection ALL = new FieldSelection(Set.of(), Set.of());
+
+    public boolean isAll() {
+        return documentFields.isEmpty();
+    }
+}
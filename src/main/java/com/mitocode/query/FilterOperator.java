@@ -0,0 +1,49 @@
+package com.mitocode.query;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.List;
+
+//Operadores de ?filter=campo:operador:valor
+public enum FilterOperator {
+
+    EQ,
+    NE,
+    GT,
+    GTE,
+    LT,
+    LTE,
+    //valores separados por | (la coma separa clausulas)
+    IN,
+    //solo texto; se traduce a /^valor/, que Mongo resuelve como rango sobre el indice
+    PREFIX;
+
+    public static FilterOperator parse(String value) {
+        return Arrays.stream(values())
+                .filter(op -> op.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown filter operator: " + value));
+    }
+
+    public Criteria apply(Criteria criteria, List<Object> values) {
+        Object value = values.get(0);
+        return switch (this) {
+            case EQ -> criteria.is(value);
+            case NE -> criteria.ne(value);
+            case GT -> criteria.gt(value);
+            case GTE -> criteria.gte(value);
+            case LT -> criteria.lt(value);
+            case LTE -> criteria.lte(value);
+            case IN -> criteria.in(values);
+            case PREFIX -> criteria.regex("^" + escape((String) value));
+        };
+    }
+
+    //sin metacaracteres sueltos el regex sigue siendo un prefijo simple (acotado por el indice)
+    private static String escape(String value) {
+        return value.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+}
@@ -0,0 +1,242 @@
+package com.mitocode.query;
+
+import com.mitocode.mongo.MongoIndexManager;
+import com.mitocode.projection.ApiFields;
+import com.mitocode.projection.ApiFields.ApiPath;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Traduce ?filter=campo:operador:valor (repetible o separado por comas) y ?sort=campo,-campo a un QuerySpec.
+ * Solo acepta campos marcados con @ApiField(filterable/sortable) y rechaza un orden que ningun indice
+ * declarado pueda entregar ya ordenado: un sort en memoria sobre una coleccion grande es lo que dispara la latencia.
+ * El orden devuelto se completa con las claves restantes del indice hasta _id: con claves repetidas (apellido,
+ * nombre de plato) skip/limit no repite ni salta documentos entre paginas.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryParser {
+
+    private static final String ID = "_id";
+    private static final List<Sort.Order> ID_INDEX = List.of(Sort.Order.asc(ID));
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MongoIndexManager indexManager;
+
+    //claves de los indices declarados por tipo de documento (se resuelven una sola vez)
+    private final Map<Class<?>, List<List<Sort.Order>>> indexes = new ConcurrentHashMap<>();
+
+    public QuerySpec parse(Class<?> documentType, List<String> filters, String sort) {
+        Map<String, ApiPath> paths = ApiFields.paths(documentType);
+        Map<String, Criteria> byField = new LinkedHashMap<>();
+        Set<String> equalityFields = new HashSet<>();
+
+        if (filters != null) {
+            filters.stream()
+                    .filter(StringUtils::hasText)
+                    .forEach(filter -> addFilter(paths, filter.trim(), byField, equalityFields));
+        }
+
+        Sort mongoSort = indexedSort(documentType, sort(paths, sort), equalityFields);
+
+        List<Criteria> criteria = new ArrayList<>(byField.values());
+        Criteria combined = switch (criteria.size()) {
+            case 0 -> new Criteria();
+            case 1 -> criteria.get(0);
+            default -> new Criteria().andOperator(criteria);
+        };
+        return new QuerySpec(combined, mongoSort);
+    }
+
+    private void addFilter(Map<String, ApiPath> paths, String filter, Map<String, Criteria> byField, Set<String> equalityFields) {
+        String[] parts = filter.split(":", 3);
+        if (parts.length != 3) {
+            throw badRequest("Invalid filter '" + filter + "', expected field:operator:value");
+        }
+        ApiPath path = paths.get(parts[0]);
+        if (path == null || !path.filterable()) {
+            throw badRequest("Field is not filterable: " + parts[0]);
+        }
+        FilterOperator operator = FilterOperator.parse(parts[1]);
+        if (operator == FilterOperator.PREFIX && path.type() != String.class) {
+            throw badRequest("Operator prefix requires a text field: " + parts[0]);
+        }
+
+        List<Object> values = operator == FilterOperator.IN
+                ? Arrays.stream(parts[2].split("\\|")).map(value -> convert(path, parts[0], value)).toList()
+                : List.of(convert(path, parts[0], parts[2]));
+
+        //varias clausulas sobre el mismo campo se combinan en un rango: price:gte:10,price:lt:20
+        Criteria criteria = byField.computeIfAbsent(path.documentPath(), Criteria::where);
+        try {
+            operator.apply(criteria, values);
+        } catch (InvalidDataAccessApiUsageException e) {
+            throw badRequest("Conflicting filters on field: " + parts[0]);
+        }
+        if (operator == FilterOperator.EQ) {
+            equalityFields.add(path.documentPath());
+        }
+    }
+
+    private Sort sort(Map<String, ApiPath> paths, String sort) {
+        if (!StringUtils.hasText(sort)) {
+            return Sort.unsorted();
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (String token : sort.split(",")) {
+            String field = token.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            boolean desc = field.startsWith("-");
+            if (desc || field.startsWith("+")) {
+                field = field.substring(1);
+            }
+            ApiPath path = paths.get(field);
+            if (path == null || !path.sortable()) {
+                throw badRequest("Field is not sortable: " + field);
+            }
+            orders.add(desc ? Sort.Order.desc(path.documentPath()) : Sort.Order.asc(path.documentPath()));
+        }
+        return Sort.by(orders);
+    }
+
+    //Orden pedido + desempate por _id. Solo las claves fijadas con eq no necesitan indice: el _id lo agrega CRUDImpl.
+    private Sort indexedSort(Class<?> documentType, Sort sort, Set<String> equalityFields) {
+        List<Sort.Order> requested = sort.stream()
+                .filter(order -> !equalityFields.contains(order.getProperty()))
+                .toList();
+        if (requested.isEmpty()) {
+            return sort;
+        }
+        List<Sort.Order> tail = indexes.computeIfAbsent(documentType, this::indexKeys).stream()
+                .map(index -> provides(index, requested, equalityFields))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElseThrow(() -> badRequest("Sort is not backed by an index: " + sort));
+        List<Sort.Order> orders = new ArrayList<>(sort.toList());
+        orders.addAll(tail);
+        return Sort.by(orders);
+    }
+
+    //El orden sale del indice si, tras saltar las claves iniciales fijadas con eq, el indice empieza con las
+    //claves pedidas en la misma direccion (o todas invertidas: Mongo recorre el indice al reves). Devuelve las
+    //claves del indice que faltan hasta _id (en la direccion del recorrido), o null si el indice no lo entrega
+    //o no termina en _id: sin desempate unico el orden entre paginas no es estable.
+    private static List<Sort.Order> provides(List<Sort.Order> index, List<Sort.Order> requested, Set<String> equalityFields) {
+        int start = 0;
+        while (start < index.size() && equalityFields.contains(index.get(start).getProperty())) {
+            start++;
+        }
+        if (index.size() - start < requested.size()) {
+            return null;
+        }
+        Boolean reversed = null;
+        for (int i = 0; i < requested.size(); i++) {
+            Sort.Order key = index.get(start + i);
+            Sort.Order order = requested.get(i);
+            if (!key.getProperty().equals(order.getProperty())) {
+                return null;
+            }
+            boolean opposite = key.getDirection() != order.getDirection();
+            if (reversed == null) {
+                reversed = opposite;
+            } else if (reversed != opposite) {
+                return null;
+            }
+        }
+        if (requested.stream().anyMatch(order -> order.getProperty().equals(ID))) {
+            return List.of();
+        }
+        List<Sort.Order> tail = new ArrayList<>();
+        for (Sort.Order key : index.subList(start + requested.size(), index.size())) {
+            tail.add(reversed ? key.with(key.getDirection().isAscending() ? Sort.Direction.DESC : Sort.Direction.ASC) : key);
+            if (key.getProperty().equals(ID)) {
+                return tail;
+            }
+        }
+        return null;
+    }
+
+    private List<List<Sort.Order>> indexKeys(Class<?> documentType) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(documentType);
+        List<List<Sort.Order>> keys = new ArrayList<>();
+        keys.add(ID_INDEX);
+        for (IndexDefinition index : indexManager.declaredIndexes(entity)) {
+            keys.add(orders(index.getIndexKeys()));
+        }
+        return List.copyOf(keys);
+    }
+
+    //solo claves ascendentes/descendentes: un indice text o 2dsphere no entrega un orden
+    private static List<Sort.Order> orders(Document indexKeys) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Map.Entry<String, Object> key : indexKeys.entrySet()) {
+            if (!(key.getValue() instanceof Number direction)) {
+                break;
+            }
+            orders.add(direction.intValue() >= 0 ? Sort.Order.asc(key.getKey()) : Sort.Order.desc(key.getKey()));
+        }
+        return orders;
+    }
+
+    private static Object convert(ApiPath path, String field, String raw) {
+        Class<?> type = path.type();
+        try {
+            if (path.isId()) {
+                //los _id se guardan como ObjectId cuando el texto es un ObjectId valido
+                return ObjectId.isValid(raw) ? new ObjectId(raw) : raw;
+            }
+            if (type == String.class) {
+                return raw;
+            }
+            if (type == Boolean.class || type == boolean.class) {
+                if (!raw.equalsIgnoreCase("true") && !raw.equalsIgnoreCase("false")) {
+                    throw new IllegalArgumentException(raw);
+                }
+                return Boolean.valueOf(raw);
+            }
+            if (type == Integer.class || type == int.class) {
+                return Integer.valueOf(raw);
+            }
+            if (type == Long.class || type == long.class) {
+                return Long.valueOf(raw);
+            }
+            if (type == Double.class || type == double.class) {
+                return Double.valueOf(raw);
+            }
+            if (type == LocalDate.class) {
+                return LocalDate.parse(raw);
+            }
+        } catch (RuntimeException e) {
+            throw badRequest("Invalid value '" + raw + "' for field " + field);
+        }
+        throw badRequest("Field cannot be filtered by value: " + field);
+    }
+
+    private static ResponseStatusException badRequest(String message) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, message);
+    }
+}
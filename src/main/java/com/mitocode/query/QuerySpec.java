@@ -0,0 +1,13 @@
+package com.mitocode.query;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * Resultado de ?filter= y ?sort= ya traducido a rutas del documento.
+ * Un Criteria vacio y Sort.unsorted() equivalen a la paginacion sin filtros.
+ */
+public record QuerySpec(Criteria criteria, Sort sort) {
+
+    public static final QuerySpec NONE = new QuerySpec(new Criteria(), Sort.unsorted());
+}
@@ -1,8 +1,13 @@
 package com.mitocode.repo;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.data.repository.NoRepositoryBean;
+import reactor.core.publisher.Flux;
 
 @NoRepositoryBean
 public interface IGenericRepo<T, ID> extends ReactiveMongoRepository<T, ID> {
+
+    //skip, limit y sort se resuelven en Mongo
+    Flux<T> findAllBy(Pageable pageable);
 }
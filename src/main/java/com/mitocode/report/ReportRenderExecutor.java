@@ -0,0 +1,219 @@
+package com.mitocode.report;
+
+import com.mitocode.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+//Pool acotado para fill/export de Jasper (CPU intensivo): nunca corre en el event loop.
+//Con el pool y la cola llenos se rechaza con 503 + Retry-After en lugar de encolar sin limite;
+//un render que supera app.report.timeout-ms se interrumpe y responde 504.
+@Component
+public class ReportRenderExecutor implements DisposableBean {
+
+    private final Scheduler scheduler;
+    private final Duration timeout;
+    private final long retryAfterSeconds;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger exports = new AtomicInteger();
+    private final AtomicInteger archives = new AtomicInteger();
+    private final int chunkSize;
+    private final int maxExports;
+    private final Duration exportIdleTimeout;
+    private final int maxArchives;
+    private final Duration archiveIdleTimeout;
+    private final Timer renderTimer;
+    private final Timer exportTimer;
+    private final Counter rejected;
+    private final Counter exportsRejected;
+    private final Counter archivesRejected;
+    private final Counter timedOut;
+
+    public ReportRenderExecutor(MeterRegistry registry,
+                                @Value("${app.report.max-concurrency:2}") int maxConcurrency,
+                                @Value("${app.report.max-queued:20}") int maxQueued,
+                                @Value("${app.report.timeout-ms:30000}") long timeoutMillis,
+                                @Value("${app.report.retry-after-seconds:5}") long retryAfterSeconds,
+                                @Value("${app.report.chunk-size:8192}") int chunkSize,
+                                @Value("${app.report.batch.max-active:2}") int maxArchives,
+                                @Value("${app.report.export.max-active:32}") int maxExports,
+                                @Value("${app.report.export.idle-timeout-ms:30000}") long exportIdleMillis,
+                                @Value("${app.report.batch.idle-timeout-ms:120000}") long archiveIdleMillis) {
+        this.scheduler = Schedulers.newBoundedElastic(maxConcurrency, maxQueued, "report-render");
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.chunkSize = chunkSize;
+        this.maxArchives = maxArchives;
+        this.maxExports = maxExports;
+        this.exportIdleTimeout = Duration.ofMillis(exportIdleMillis);
+        this.archiveIdleTimeout = Duration.ofMillis(archiveIdleMillis);
+
+        Gauge.builder("reports.render.queued", queued, AtomicInteger::get)
+                .description("Reports waiting for a render thread")
+                .register(registry);
+        Gauge.builder("reports.render.active", active, AtomicInteger::get)
+                .description("Reports being rendered")
+                .register(registry);
+        Gauge.builder("reports.export.active", exports, AtomicInteger::get)
+                .description("PDF downloads being streamed")
+                .register(registry);
+        Gauge.builder("reports.batch.active", archives, AtomicInteger::get)
+                .description("Batch report exports being streamed")
+                .register(registry);
+        this.renderTimer = Timer.builder("reports.render")
+                .description("Report render time, excluding queue wait")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.exportTimer = Timer.builder("reports.export")
+                .description("Streaming PDF export time")
+                .publishPercentileHistogram()
+                .register(registry);
+        //un rechazo por limite: la saturacion de descargas o lotes no se confunde con la de la cola de render
+        this.rejected = Counter.builder("reports.render.rejected")
+                .description("Reports rejected because the render queue was full")
+                .register(registry);
+        this.exportsRejected = Counter.builder("reports.export.rejected")
+                .description("PDF downloads rejected because too many were being streamed")
+                .register(registry);
+        this.archivesRejected = Counter.builder("reports.batch.rejected")
+                .description("Batch report exports rejected because too many were being streamed")
+                .register(registry);
+        this.timedOut = Counter.builder("reports.render.timeouts")
+                .description("Reports cancelled because rendering exceeded the timeout")
+                .register(registry);
+    }
+
+    public <T> Mono<T> submit(Callable<T> task) {
+        return Mono.defer(() -> {
+            AtomicBoolean claimed = new AtomicBoolean();
+            AtomicBoolean cancelled = new AtomicBoolean();
+            //hilo que esta renderizando; null mientras espera en cola o cuando ya termino
+            AtomicReference<Thread> worker = new AtomicReference<>();
+            queued.incrementAndGet();
+
+            return Mono.fromCallable(() -> {
+                        //tomar la tarea y publicar el hilo bajo el mismo lock que la cancelacion: o la cancelacion
+                        //ve el hilo y lo interrumpe, o el hilo ve la cancelacion y no renderiza
+                        synchronized (worker) {
+                            if (cancelled.get() || !claimed.compareAndSet(false, true)) {
+                                return null;
+                            }
+                            worker.set(Thread.currentThread());
+                        }
+                        queued.decrementAndGet();
+                        active.incrementAndGet();
+                        try {
+                            return renderTimer.recordCallable(task);
+                        } finally {
+                            synchronized (worker) {
+                                worker.set(null);
+                                //una interrupcion que llego al terminar no pasa a la siguiente tarea del hilo
+                                Thread.interrupted();
+                            }
+                            active.decrementAndGet();
+                        }
+                    })
+                    .subscribeOn(scheduler)
+                    //timeout o cliente desconectado: se interrumpe el fill (Jasper lo revisa entre bandas)
+                    //para liberar el hilo, no solo se deja de escuchar el resultado
+                    .doOnCancel(() -> {
+                        synchronized (worker) {
+                            cancelled.set(true);
+                            Thread thread = worker.get();
+                            if (thread != null) {
+                                thread.interrupt();
+                            }
+                        }
+                    })
+                    .timeout(timeout)
+                    .doFinally(signal -> {
+                        if (claimed.compareAndSet(false, true)) {
+                            queued.decrementAndGet();
+                        }
+                    });
+        })
+        .onErrorMap(RejectedExecutionException.class, e -> busy("Report queue is full", e, rejected))
+        //un reporte que tarda demasiado no es un pool lleno: 504 sin Retry-After
+        .onErrorMap(TimeoutException.class, e -> {
+            timedOut.increment();
+            return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Report rendering timed out", e);
+        });
+    }
+
+    //El export escribe en un OutputStream respaldado por DataBuffers del pool de Netty: cada chunk se emite
+    //cuando el cliente lo pide, asi los bytes del PDF en memoria no dependen de su tamano (el JasperPrint lleno
+    //si queda completo en memoria hasta terminar). El escritor bloquea mientras el cliente no lee: corre en
+    //boundedElastic para no ocupar un hilo de render, con un maximo de exports a la vez y un tiempo maximo
+    //entre chunks (un cliente detenido se corta y libera el hilo).
+    public Flux<DataBuffer> stream(Consumer<OutputStream> writer, DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> {
+            if (exports.incrementAndGet() > maxExports) {
+                exports.decrementAndGet();
+                return Flux.error(busy("Too many report downloads in progress", null, exportsRejected));
+            }
+            Consumer<OutputStream> timed = out -> exportTimer.record(() -> writer.accept(out));
+            return Flux.from(DataBufferUtils.outputStreamPublisher(timed, bufferFactory, Schedulers.boundedElastic()::schedule, chunkSize))
+                    .timeout(exportIdleTimeout)
+                    .doFinally(signal -> exports.decrementAndGet());
+        });
+    }
+
+    //Escritor de un lote (ZIP): casi todo el tiempo espera PDFs que se renderizan con submit, por eso corre en
+    //boundedElastic y no ocupa un hilo de render. Se acota cuantos lotes se generan a la vez y, como en stream,
+    //un cliente que deja de leer se corta para liberar el cupo (el tiempo entre chunks incluye renderizar un PDF).
+    public Flux<DataBuffer> archive(Consumer<OutputStream> writer, DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> {
+            if (archives.incrementAndGet() > maxArchives) {
+                archives.decrementAndGet();
+                return Flux.error(busy("Too many batch exports in progress", null, archivesRejected));
+            }
+            return Flux.from(DataBufferUtils.outputStreamPublisher(writer, bufferFactory, Schedulers.boundedElastic()::schedule, chunkSize))
+                    .timeout(archiveIdleTimeout)
+                    .doFinally(signal -> archives.decrementAndGet());
+        });
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    //Solo la cola de render llena vale reintentar: un timeout volveria a ocupar un hilo con el mismo reporte lento
+    public static boolean isQueueFull(Throwable error) {
+        return error instanceof ServiceBusyException && error.getCause() instanceof RejectedExecutionException;
+    }
+
+    private ServiceBusyException busy(String reason, Throwable cause, Counter counter) {
+        counter.increment();
+        return new ServiceBusyException(reason, retryAfterSeconds, cause);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,80 @@
+package com.mitocode.report;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+//Compila la plantilla una sola vez al arrancar; las peticiones solo hacen fill + export.
+//Si el archivo cambia (lastModified) se recompila en caliente.
+@Slf4j
+@Component
+public class ReportTemplateCache implements InitializingBean {
+
+    private final Resource template;
+    private final long reloadCheckMillis;
+
+    private volatile Compiled current;
+
+    public ReportTemplateCache(ResourceLoader resourceLoader,
+                               @Value("${app.report.invoice-template:classpath:facturas.jrxml}") String location,
+                               @Value("${app.report.reload-check-ms:5000}") long reloadCheckMillis) {
+        this.template = resourceLoader.getResource(location);
+        this.reloadCheckMillis = reloadCheckMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        current = load();
+    }
+
+    public JasperReport get() {
+        Compiled compiled = current;
+        //reload-check-ms <= 0 desactiva la recarga (produccion con .jasper empaquetado)
+        if (reloadCheckMillis > 0 && System.currentTimeMillis() - compiled.checkedAt() >= reloadCheckMillis) {
+            compiled = reloadIfModified(compiled);
+        }
+        return compiled.report();
+    }
+
+    private synchronized Compiled reloadIfModified(Compiled seen) {
+        if (current != seen) {
+            return current;
+        }
+        try {
+            if (template.lastModified() != seen.lastModified()) {
+                current = load();
+                log.info("Report template {} reloaded", template.getDescription());
+            } else {
+                current = new Compiled(seen.report(), seen.lastModified(), System.currentTimeMillis());
+            }
+        } catch (IOException | JRException e) {
+            //una plantilla rota no tumba los reportes: se sigue usando la ultima compilada
+            log.error("Could not reload report template {}", template.getDescription(), e);
+            current = new Compiled(seen.report(), seen.lastModified(), System.currentTimeMillis());
+        }
+        return current;
+    }
+
+    private Compiled load() throws IOException, JRException {
+        long lastModified = template.lastModified();
+        try (InputStream inputStream = template.getInputStream()) {
+            JasperReport report = template.getFilename() != null && template.getFilename().endsWith(".jasper")
+                    ? (JasperReport) JRLoader.loadObject(inputStream)
+                    : JasperCompileManager.compileReport(inputStream);
+            return new Compiled(report, lastModified, System.currentTimeMillis());
+        }
+    }
+
+    private record Compiled(JasperReport report, long lastModified, long checkedAt) {
+    }
+}
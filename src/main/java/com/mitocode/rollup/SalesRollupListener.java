@@ -0,0 +1,165 @@
+package com.mitocode.rollup;
+
+import com.mitocode.model.Invoice;
+import com.mitocode.service.ISalesRollupService;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Alimenta los rollups de ventas desde el change stream de invoices.
+ * Sin resume token guardado primero reconcilia todas las facturas y luego abre el stream desde el operationTime
+ * previo a esa carga (los eventos repetidos no suman dos veces: se aplica la diferencia contra la contribucion).
+ * Un mongod standalone no tiene change streams: en modo auto los rollups no se mantienen y se avisa al arrancar.
+ * El modo polling (reconciliar todas las facturas cada poll-interval-ms) hay que pedirlo explicitamente: es para
+ * el Mongo standalone de las pruebas, no para una base con datos reales.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.rollups.enabled", havingValue = "true", matchIfMissing = true)
+public class SalesRollupListener {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ISalesRollupService rollups;
+
+    //auto | change-stream | polling
+    @Value("${app.rollups.mode:auto}")
+    private String mode;
+
+    @Value("${app.rollups.poll-interval-ms:10000}")
+    private long pollIntervalMillis;
+
+    private volatile Disposable subscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Mono<Void> feed = switch (mode) {
+            case "polling" -> poll();
+            case "change-stream" -> changeStream();
+            default -> supportsChangeStreams()
+                    .flatMap(supported -> supported ? changeStream() : standalone());
+        };
+        subscription = feed
+                //sin Mongo disponible al arrancar: se reintenta en lugar de dejar los rollups detenidos
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .doBeforeRetry(signal -> log.warn("Sales rollups feed failed, retrying: {}", signal.failure().getMessage())))
+                .subscribe(null, e -> log.error("Sales rollups feed stopped", e));
+    }
+
+    @PreDestroy
+    public void stop() {
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    //replica set (setName) o mongos (isdbgrid)
+    private Mono<Boolean> supportsChangeStreams() {
+        return mongoTemplate.executeCommand(new Document("hello", 1))
+                .map(hello -> hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg")));
+    }
+
+    //sin caer a polling en silencio: cada pasada recorre todas las facturas y contribuciones
+    private Mono<Void> standalone() {
+        return Mono.fromRunnable(() -> log.warn("Sales rollups are NOT being maintained: Mongo is standalone and has no change streams. "
+                + "Use a replica set, or set app.rollups.mode=polling to fully reconcile every {} ms (meant for tests)",
+                pollIntervalMillis));
+    }
+
+    //cada reintento vuelve a leer el resume token: se continua desde el ultimo evento aplicado
+    private Mono<Void> changeStream() {
+        //si antes corrio en modo polling puede quedar una contribucion a medio aplicar
+        return rollups.settlePending()
+                .then(rollups.resumeToken())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMapMany(token -> token
+                        .map(value -> events(ChangeStreamOptions.builder().resumeAfter(value)))
+                        .orElseGet(this::backfillThenEvents))
+                .concatMap(this::handle)
+                .then();
+    }
+
+    private Flux<ChangeStreamEvent<Document>> backfillThenEvents() {
+        return mongoTemplate.executeCommand(new Document("ping", 1))
+                .map(reply -> Optional.ofNullable(reply.get("operationTime", BsonTimestamp.class)))
+                .flatMapMany(startAt -> rollups.reconcile()
+                        .doOnNext(changed -> log.info("Sales rollups backfill: {} invoices applied", changed))
+                        .thenMany(Flux.defer(() -> {
+                            ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder();
+                            startAt.ifPresent(options::resumeAt);
+                            return events(options);
+                        })));
+    }
+
+    private Flux<ChangeStreamEvent<Document>> events(ChangeStreamOptions.ChangeStreamOptionsBuilder options) {
+        //updateLookup: en un update llega la factura completa, no solo los campos cambiados
+        return mongoTemplate.changeStream(mongoTemplate.getCollectionName(Invoice.class),
+                options.returnFullDocumentOnUpdate().build(), Document.class);
+    }
+
+    //una reconciliacion a la vez; si una tarda mas que el intervalo los ticks intermedios se descartan
+    private Mono<Void> poll() {
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(pollIntervalMillis))
+                .onBackpressureDrop()
+                .concatMap(tick -> rollups.reconcile()
+                        .doOnNext(changed -> {
+                            if (changed > 0) {
+                                log.debug("Sales rollups: {} invoices reconciled", changed);
+                            }
+                        })
+                        .onErrorResume(e -> {
+                            log.warn("Sales rollups reconcile failed: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .then();
+    }
+
+    private Mono<Void> handle(ChangeStreamEvent<Document> event) {
+        OperationType type = event.getOperationType();
+        ChangeStreamDocument<Document> raw = event.getRaw();
+        if (type == OperationType.INVALIDATE || type == OperationType.DROP
+                || type == OperationType.RENAME || type == OperationType.DROP_DATABASE) {
+            //el stream ya no se puede continuar: se descarta el token y el reintento vuelve a reconciliar
+            return rollups.clearResumeToken()
+                    .then(Mono.error(new IllegalStateException("Invoices change stream invalidated by " + type)));
+        }
+        if (raw == null || raw.getDocumentKey() == null) {
+            return Mono.empty();
+        }
+        String invoiceId = id(raw.getDocumentKey().get("_id"));
+        //update de una factura borrada despues: sin documento se trata como delete
+        Document invoice = type == OperationType.DELETE ? null : event.getBody();
+        return rollups.applyChange(invoiceId, invoice, event.getResumeToken());
+    }
+
+    private static String id(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.isString() ? id.asString().getValue() : id.toString();
+    }
+}
@@ -1,10 +1,16 @@
 package com.mitocode.service;
 
+import com.mitocode.bulk.BulkResult;
+import com.mitocode.pagination.CursorPageSupport;
 import com.mitocode.pagination.PageSupport;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Set;
+
 public interface ICRUD<T, ID> {
 
     Mono<T> save(T t);
@@ -14,4 +20,15 @@ public interface ICRUD<T, ID> {
     Mono<T> findById(ID id);
     Mono<Boolean> delete(ID id);
     Mono<PageSupport<T>> getPage(Pageable pageable);
+    Mono<CursorPageSupport<T>> getCursorPage(String cursor, int size);
+
+    //Proyeccion: fields son rutas del documento (ApiFields.select); vacio = documento completo
+    Flux<T> findAll(Set<String> fields);
+    Mono<T> findById(ID id, Set<String> fields);
+    //filter: rutas del documento (QueryParser); un Criteria vacio no filtra
+    Mono<PageSupport<T>> getPage(Pageable pageable, Criteria filter, Set<String> fields);
+
+    Mono<BulkResult> saveAll(List<T> list);
+    Mono<BulkResult> bulkUpdate(List<T> list);
+    Mono<BulkResult> bulkDelete(List<ID> ids);
 }
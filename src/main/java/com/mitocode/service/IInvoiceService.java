@@ -1,10 +1,43 @@
 package com.mitocode.service;
 
+import com.mitocode.dto.ClientSalesDTO;
+import com.mitocode.dto.DishSalesDTO;
+import com.mitocode.dto.SalesPeriodDTO;
 import com.mitocode.model.Invoice;
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Set;
+
 public interface IInvoiceService extends ICRUD<Invoice, String>{
 
     Mono<byte[]> generateReport(String idInvoice);
 
+    //Mono vacio si la factura no existe; el Flux emite el PDF por chunks
+    Mono<Flux<DataBuffer>> generateReportStream(String idInvoice, DataBufferFactory bufferFactory);
+
+    //Lote de PDFs en un ZIP (una entrada por factura). Mono vacio si ninguna factura cumple el filtro
+    Mono<Flux<DataBuffer>> generateReportZip(Criteria filter, DataBufferFactory bufferFactory);
+
+    //Las lecturas del CRUD devuelven la factura compacta (solo _id de cliente y platos)
+    Mono<Invoice> hydrate(Invoice invoice, Set<InvoiceExpand> expand);
+
+    Flux<Invoice> hydrate(Flux<Invoice> invoices, Set<InvoiceExpand> expand);
+
+    //Convierte las facturas guardadas con cliente/platos embebidos al formato compacto
+    Mono<UpdateResult> compactStoredInvoices();
+
+    //Ventas calculadas en Mongo (aggregate); from inclusivo, to exclusivo, null = sin limite
+    Flux<DishSalesDTO> salesByDish(Instant from, Instant to, int limit);
+
+    Flux<ClientSalesDTO> topClients(Instant from, Instant to, int limit);
+
+    Flux<SalesPeriodDTO> salesByPeriod(Instant from, Instant to, SalesPeriod unit, ZoneId zone);
+
 }
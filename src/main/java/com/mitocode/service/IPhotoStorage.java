@@ -0,0 +1,10 @@
+package com.mitocode.service;
+
+import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.Mono;
+
+public interface IPhotoStorage {
+
+    //Guarda la foto del recurso indicado y devuelve la url publica
+    Mono<String> store(String id, FilePart filePart);
+}
@@ -0,0 +1,33 @@
+package com.mitocode.service;
+
+import com.mitocode.model.SalesRollup;
+import org.bson.BsonValue;
+import org.bson.Document;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+public interface ISalesRollupService {
+
+    //Consultas del dashboard: lecturas por _id o por indice (type, revenue) / (type, key)
+    Mono<SalesRollup> findOne(RollupType type, String key);
+
+    Flux<SalesRollup> top(RollupType type, int limit);
+
+    //to exclusivo; null = sin limite
+    Flux<SalesRollup> days(LocalDate from, LocalDate to);
+
+    //Evento del change stream: invoice null = factura borrada. Se guarda junto con el resume token.
+    Mono<Void> applyChange(String invoiceId, Document invoice, BsonValue resumeToken);
+
+    //Recorre todas las facturas y corrige las contribuciones que difieren (carga inicial y modo polling)
+    Mono<Long> reconcile();
+
+    //Termina las aplicaciones del modo polling que quedaron a medias (contribuciones con pending)
+    Mono<Long> settlePending();
+
+    Mono<BsonValue> resumeToken();
+
+    Mono<Void> clearResumeToken();
+}
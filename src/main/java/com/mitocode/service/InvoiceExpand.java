@@ -0,0 +1,32 @@
+package com.mitocode.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+//Referencias que se resuelven al leer una factura (?expand=client,dishes); en Mongo solo se guardan los _id
+public enum InvoiceExpand {
+    CLIENT,
+    DISHES;
+
+    public static Set<InvoiceExpand> parse(String expand) {
+        Set<InvoiceExpand> result = EnumSet.noneOf(InvoiceExpand.class);
+        if (expand == null || expand.isBlank() || expand.equalsIgnoreCase("none")) {
+            return result;
+        }
+        Arrays.stream(expand.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .forEach(value -> {
+                    try {
+                        result.add(valueOf(value.toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown expand value: " + value);
+                    }
+                });
+        return result;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mitocode.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+//Dimension de los rollups de ventas; key() es el prefijo del _id y el valor del campo type
+public enum RollupType {
+    DISH,
+    CLIENT,
+    DAY;
+
+    public String key() {
+        return name().toLowerCase();
+    }
+
+    public String id(String key) {
+        return key() + ":" + key;
+    }
+
+    public static RollupType parse(String type) {
+        try {
+            return valueOf(type.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown rollup type: " + type);
+        }
+    }
+}
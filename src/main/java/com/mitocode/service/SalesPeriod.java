@@ -0,0 +1,29 @@
+package com.mitocode.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+//Agrupacion de ventas en el tiempo (?unit=day|week|month); format es el de $dateToString
+public enum SalesPeriod {
+    DAY("%Y-%m-%d"),
+    WEEK("%G-W%V"),
+    MONTH("%Y-%m");
+
+    private final String format;
+
+    SalesPeriod(String format) {
+        this.format = format;
+    }
+
+    public String format() {
+        return format;
+    }
+
+    public static SalesPeriod parse(String unit) {
+        try {
+            return valueOf(unit.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown period unit: " + unit);
+        }
+    }
+}
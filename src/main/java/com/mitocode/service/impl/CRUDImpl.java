@@ -1,65 +1,537 @@
 package com.mitocode.service.impl;
 
+import com.mitocode.bulk.BulkItemResult;
+import com.mitocode.bulk.BulkResult;
+import com.mitocode.cache.CrudCacheRegistry;
+import com.mitocode.cache.ReactiveCache;
+import com.mitocode.metrics.ReactiveMetrics;
+import com.mitocode.pagination.CursorPageSupport;
+import com.mitocode.pagination.CursorToken;
 import com.mitocode.pagination.PageSupport;
-import com.mitocode.repo.IDishRepo;
 import com.mitocode.repo.IGenericRepo;
 import com.mitocode.service.ICRUD;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 public abstract class CRUDImpl<T, ID> implements ICRUD<T, ID> {
 
+    @Autowired
+    protected ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    protected CrudCacheRegistry cacheRegistry;
+
+    @Autowired
+    protected MeterRegistry meterRegistry;
+
+    @Value("${app.pagination.estimated-count:false}")
+    private boolean estimatedCount;
+
+    @Value("${app.mongo.cursor-batch-size:0}")
+    private int cursorBatchSize;
+
+    @Value("${app.bulk.batch-size:500}")
+    private int bulkBatchSize;
+
+    private Class<T> entityClass;
+
+    @PostConstruct
+    void validateBulkBatchSize() {
+        //inBatches divide por este valor
+        if (bulkBatchSize < 1) {
+            throw new IllegalStateException("app.bulk.batch-size must be at least 1, was " + bulkBatchSize);
+        }
+    }
+
     protected abstract IGenericRepo<T, ID> getRepo();
 
+    //Cache opt-in por coleccion (app.cache.entities.*); null = sin cache
+    protected ReactiveCache<ID, T> getCache() {
+        return cacheRegistry.get(mongoTemplate.getCollectionName(getEntityClass()));
+    }
+
     @Override
     public Mono<T> save(T t) {
-        return getRepo().save(t);
+        return timed("save", getRepo().save(t)
+                .doOnNext(saved -> {
+                    if (getCache() != null) {
+                        cacheWrite(getId(saved), saved);
+                    }
+                }));
     }
 
     @Override
     public Mono<T> update(ID id, T t) {
-        return getRepo().findById(id).flatMap(e -> getRepo().save(t));
+        //replace-if-exists atomico: un solo viaje a Mongo, vacio si el _id no existe
+        return timed("update", Mono.defer(() -> {
+                    setId(t, id);
+                    return mongoTemplate.findAndReplace(byId(id), t, FindAndReplaceOptions.options().returnNew());
+                })
+                .doOnSuccess(e -> cacheWrite(id, e)));
     }
 
     @Override
     public Flux<T> findAll() {
-        return getRepo().findAll();
+        if (cursorBatchSize <= 0) {
+            return timed("findAll", getRepo().findAll());
+        }
+        //el driver pide el siguiente lote (getMore) solo cuando hay demanda aguas abajo
+        return timed("findAll", mongoTemplate.find(new Query().cursorBatchSize(cursorBatchSize), getEntityClass()));
     }
 
     @Override
     public Mono<T> findById(ID id) {
-        return getRepo().findById(id);
+        ReactiveCache<ID, T> cache = getCache();
+        return timed("findById", cache == null ? getRepo().findById(id) : cache.get(id, key -> getRepo().findById(key)));
     }
 
     @Override
     public Mono<Boolean> delete(ID id) {
-        return getRepo().findById(id)
-                .hasElement()
-                .flatMap(result -> {
-                    if(result){
-                        return getRepo().deleteById(id).thenReturn(true);
-                    }else {
-                        return Mono.just(false);
-                    }
-                });
+        //deletedCount indica si existia, sin un findById previo
+        return timed("delete", mongoTemplate.remove(byId(id), getEntityClass())
+                .map(result -> result.getDeletedCount() > 0)
+                .doOnSuccess(result -> evict(id)));
     }
 
     @Override
     public Mono<PageSupport<T>> getPage(Pageable pageable) {
-        return getRepo().findAll()  //Flux<T>
-                .collectList()
-                .map(list -> new PageSupport<>(
-                        //pageNumber = 1;
-                        //pageSize = 2;
-                //1,2,3,4,5,6,7,8,9,10
-                    list.stream()
-                            .skip(pageable.getPageNumber() * pageable.getPageSize())
-                            .limit(pageable.getPageSize()).toList()
-                        ,
-                    pageable.getPageNumber(),
-                    pageable.getPageSize(),
-                    list.size()
+        return timed("getPage", toPage(pageable, getRepo().findAllBy(stable(pageable)), count()));
+    }
+
+    @Override
+    public Flux<T> findAll(Set<String> fields) {
+        if (fields.isEmpty()) {
+            return findAll();
+        }
+        Query query = project(new Query(), fields);
+        if (cursorBatchSize > 0) {
+            query.cursorBatchSize(cursorBatchSize);
+        }
+        return timed("findAll", mongoTemplate.find(query, getEntityClass()));
+    }
+
+    @Override
+    public Mono<T> findById(ID id, Set<String> fields) {
+        if (fields.isEmpty()) {
+            return findById(id);
+        }
+        //un documento parcial nunca pasa por la cache
+        return timed("findById", mongoTemplate.findOne(project(byId(id), fields), getEntityClass()));
+    }
+
+    @Override
+    public Mono<PageSupport<T>> getPage(Pageable pageable, Criteria filter, Set<String> fields) {
+        boolean unfiltered = filter.getCriteriaObject().isEmpty();
+        if (unfiltered && fields.isEmpty()) {
+            return getPage(pageable);
+        }
+        Query query = project(new Query(filter).with(stable(pageable)), fields);
+        //con filtro el total es el de los documentos que cumplen, no el de la coleccion
+        Mono<Long> total = unfiltered ? count() : mongoTemplate.count(new Query(filter), getEntityClass());
+        return timed("getPage", toPage(pageable, mongoTemplate.find(query, getEntityClass()), total));
+    }
+
+    //skip/limit solo es estable entre paginas con un orden total: _id siempre como ultima clave
+    //(QueryParser ya la agrega cuando el orden sale de un indice; aqui cubre el resto de los casos)
+    private Pageable stable(Pageable pageable) {
+        Sort sort = pageable.getSort();
+        if (sort.getOrderFor("_id") != null) {
+            return pageable;
+        }
+        Sort.Direction direction = sort.stream().reduce((first, second) -> second)
+                .map(Sort.Order::getDirection)
+                .orElse(Sort.Direction.ASC);
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort.and(Sort.by(direction, "_id")));
+    }
+
+    private Mono<PageSupport<T>> toPage(Pageable pageable, Flux<T> content, Mono<Long> total) {
+        //Mono.zip suscribe ambos a la vez: la pagina y el conteo viajan en paralelo
+        return Mono.zip(content.collectList(), total)
+                .map(tuple -> new PageSupport<>(
+                        tuple.getT1(),
+                        pageable.getPageNumber(),
+                        pageable.getPageSize(),
+                        tuple.getT2()
                 ));
     }
+
+    protected Query project(Query query, Set<String> fields) {
+        query.fields().include(fields.toArray(String[]::new));
+        return query;
+    }
+
+    @Override
+    public Mono<CursorPageSupport<T>> getCursorPage(String cursor, int size) {
+        if (size < 1) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be greater than zero"));
+        }
+
+        Sort.Order order = getCursorOrder();
+
+        //defer: un cursor invalido llega como Mono.error (400) al suscribirse, no como excepcion al armar el flujo
+        Mono<List<T>> rows = Mono.defer(() -> {
+            Query query = new Query().limit(size + 1);
+
+            if (order.getProperty().equals("_id")) {
+                query.with(Sort.by(order));
+            } else {
+                query.with(Sort.by(order, new Sort.Order(order.getDirection(), "_id")));
+            }
+
+            if (cursor != null && !cursor.isBlank()) {
+                query.addCriteria(seek(CursorToken.decode(cursor, order)));
+            }
+
+            //se pide un elemento extra solo para saber si hay pagina siguiente
+            return mongoTemplate.find(query, getEntityClass()).collectList();
+        });
+
+        return timed("getCursorPage", rows
+                .map(list -> {
+                    boolean hasNext = list.size() > size;
+                    List<T> content = hasNext ? list.subList(0, size) : list;
+                    String next = hasNext ? toCursor(content.get(content.size() - 1), order).encode() : null;
+                    return new CursorPageSupport<>(content, size, next);
+                }));
+    }
+
+    //Clave de orden del paginado por cursor; debe estar indexada y no ser nula
+    protected Sort.Order getCursorOrder() {
+        return Sort.Order.asc("_id");
+    }
+
+    private Criteria seek(CursorToken cursor) {
+        boolean asc = cursor.direction().isAscending();
+
+        if (cursor.key().equals("_id")) {
+            return asc ? Criteria.where("_id").gt(cursor.id()) : Criteria.where("_id").lt(cursor.id());
+        }
+
+        Criteria after = asc ? Criteria.where(cursor.key()).gt(cursor.value()) : Criteria.where(cursor.key()).lt(cursor.value());
+        Criteria tie = asc
+                ? Criteria.where(cursor.key()).is(cursor.value()).and("_id").gt(cursor.id())
+                : Criteria.where(cursor.key()).is(cursor.value()).and("_id").lt(cursor.id());
+        return new Criteria().orOperator(after, tie);
+    }
+
+    private CursorToken toCursor(T last, Sort.Order order) {
+        Document doc = new Document();
+        mongoTemplate.getConverter().write(last, doc);
+        Object value = doc.getEmbedded(Arrays.asList(order.getProperty().split("\\.")), Object.class);
+        return new CursorToken(order.getProperty(), order.getDirection(), value, doc.get("_id"));
+    }
+
+    @Override
+    public Mono<BulkResult> saveAll(List<T> list) {
+        return timedBulk("saveAll", inBatches(list, this::insertBatch));
+    }
+
+    @Override
+    public Mono<BulkResult> bulkUpdate(List<T> list) {
+        return timedBulk("bulkUpdate", inBatches(list, this::replaceBatch));
+    }
+
+    @Override
+    public Mono<BulkResult> bulkDelete(List<ID> ids) {
+        //un id repetido se borra una sola vez: sus repeticiones se reportan INVALID
+        Set<ID> seen = new HashSet<>();
+        Set<Integer> duplicates = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            ID id = ids.get(i);
+            if (id != null && !seen.add(id)) {
+                duplicates.add(i);
+            }
+        }
+        return timedBulk("bulkDelete", inBatches(ids, (batch, offset) -> deleteBatch(batch, offset, duplicates)));
+    }
+
+    //Lotes secuenciales de app.bulk.batch-size; cada lote es un solo bulkWrite no ordenado
+    private <E> Mono<BulkResult> inBatches(List<E> list, BiFunction<List<E>, Integer, Mono<BulkResult>> batchOp) {
+        int batches = (list.size() + bulkBatchSize - 1) / bulkBatchSize;
+        return Flux.range(0, batches)
+                .concatMap(b -> {
+                    int from = b * bulkBatchSize;
+                    return batchOp.apply(list.subList(from, Math.min(from + bulkBatchSize, list.size())), from);
+                })
+                .reduce(BulkResult::merge)
+                .defaultIfEmpty(BulkResult.of(List.of()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<BulkResult> insertBatch(List<T> batch, int offset) {
+        return Mono.defer(() -> {
+            //ids asignados antes del insert para poder reportarlos por item
+            List<ID> ids = batch.stream().map(t -> {
+                if (getId(t) == null) {
+                    setId(t, (ID) newId());
+                }
+                return getId(t);
+            }).toList();
+
+            ReactiveBulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, getEntityClass());
+            ops.insert(batch);
+
+            return ops.execute()
+                    .then(Mono.fromSupplier(() -> insertResults(ids, offset, Map.of())))
+                    .onErrorResume(e -> withWriteErrors(e, errors -> insertResults(ids, offset, errors)))
+                    .doOnNext(result -> result.getItems().stream()
+                            .filter(item -> item.getStatus().isSuccess())
+                            .forEach(item -> cacheWrite(ids.get(item.getIndex() - offset), batch.get(item.getIndex() - offset))));
+        });
+    }
+
+    private Mono<BulkResult> replaceBatch(List<T> batch, int offset) {
+        List<ID> ids = batch.stream().map(this::getId).toList();
+
+        return existingIds(ids.stream().filter(Objects::nonNull).toList())
+                .flatMap(existing -> {
+                    //solo se reemplazan los que existen; el indice del bulk se traduce al del lote
+                    List<Integer> positions = new ArrayList<>();
+                    List<BulkItemResult> results = new ArrayList<>();
+                    ReactiveBulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, getEntityClass());
+
+                    for (int i = 0; i < batch.size(); i++) {
+                        ID id = ids.get(i);
+                        if (id == null) {
+                            results.add(new BulkItemResult(offset + i, null, BulkItemResult.Status.INVALID, "id is required"));
+                        } else if (!existing.contains(id)) {
+                            results.add(BulkItemResult.of(offset + i, id, BulkItemResult.Status.NOT_FOUND));
+                        } else {
+                            ops.replaceOne(byId(id), batch.get(i));
+                            positions.add(i);
+                        }
+                    }
+
+                    if (positions.isEmpty()) {
+                        return Mono.just(BulkResult.of(results));
+                    }
+
+                    List<ID> replacedIds = positions.stream().map(ids::get).toList();
+                    return ops.execute()
+                            .map(result -> new ReplaceOutcome(result.getMatchedCount(), Map.of()))
+                            .onErrorResume(e -> withWriteErrors(e, errors -> new ReplaceOutcome(matchedCount(e), errors)))
+                            .map(outcome -> {
+                                //como en deleteBatch: si otro proceso borro alguno entre la consulta previa y el replace,
+                                //ese replace no coincide con nada y no se sabe cual fue; no se vuelve a poner en la cache
+                                boolean fewer = outcome.matched() < positions.size() - outcome.errors().size();
+                                for (int j = 0; j < positions.size(); j++) {
+                                    int i = positions.get(j);
+                                    if (outcome.errors().containsKey(j)) {
+                                        results.add(new BulkItemResult(offset + i, ids.get(i), BulkItemResult.Status.FAILED, outcome.errors().get(j)));
+                                    } else if (fewer) {
+                                        results.add(new BulkItemResult(offset + i, ids.get(i), BulkItemResult.Status.UNCERTAIN, "deleted concurrently by another request"));
+                                        evict(ids.get(i));
+                                    } else {
+                                        results.add(BulkItemResult.of(offset + i, ids.get(i), BulkItemResult.Status.UPDATED));
+                                        cacheWrite(ids.get(i), batch.get(i));
+                                    }
+                                }
+                                return BulkResult.of(results);
+                            })
+                            .doOnError(e -> replacedIds.forEach(this::evict));
+                });
+    }
+
+    private Mono<BulkResult> deleteBatch(List<ID> batch, int offset, Set<Integer> duplicates) {
+        List<ID> candidates = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i) != null && !duplicates.contains(offset + i)) {
+                candidates.add(batch.get(i));
+            }
+        }
+
+        return existingIds(candidates)
+                .flatMap(existing -> {
+                    Mono<Long> remove = existing.isEmpty()
+                            ? Mono.just(0L)
+                            : mongoTemplate.remove(Query.query(Criteria.where("_id").in(existing)), getEntityClass())
+                                    .map(DeleteResult::getDeletedCount);
+
+                    return remove.map(deleted -> {
+                        //el estado sale del deletedCount, no solo de la consulta previa: si otro proceso borro
+                        //alguno entre ambas, no se sabe cuales borro esta peticion
+                        boolean fewer = deleted < existing.size();
+                        List<BulkItemResult> results = new ArrayList<>();
+                        for (int i = 0; i < batch.size(); i++) {
+                            ID id = batch.get(i);
+                            if (duplicates.contains(offset + i)) {
+                                results.add(new BulkItemResult(offset + i, id, BulkItemResult.Status.INVALID, "duplicate id"));
+                            } else if (id != null && existing.contains(id)) {
+                                results.add(fewer
+                                        ? new BulkItemResult(offset + i, id, BulkItemResult.Status.UNCERTAIN, "deleted concurrently by another request")
+                                        : BulkItemResult.of(offset + i, id, BulkItemResult.Status.DELETED));
+                            } else {
+                                results.add(BulkItemResult.of(offset + i, id, BulkItemResult.Status.NOT_FOUND));
+                            }
+                            evict(id);
+                        }
+                        return BulkResult.of(results);
+                    });
+                });
+    }
+
+    private Mono<Set<ID>> existingIds(List<ID> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, getEntityClass())
+                .map(this::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private Object newId() {
+        Class<?> type = getPersistentEntity().getRequiredIdProperty().getType();
+        if (type == String.class) {
+            return new ObjectId().toHexString();
+        }
+        return type == ObjectId.class ? new ObjectId() : null;
+    }
+
+    private BulkResult insertResults(List<ID> ids, int offset, Map<Integer, String> errors) {
+        List<BulkItemResult> results = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            results.add(errors.containsKey(i)
+                    ? new BulkItemResult(offset + i, ids.get(i), BulkItemResult.Status.FAILED, errors.get(i))
+                    : BulkItemResult.of(offset + i, ids.get(i), BulkItemResult.Status.CREATED));
+        }
+        return BulkResult.of(results);
+    }
+
+    //Un bulk no ordenado con fallos parciales llega como error: se extraen los errores por indice
+    private static <R> Mono<R> withWriteErrors(Throwable e, Function<Map<Integer, String>, R> mapper) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            List<BulkWriteError> errors = null;
+            if (t instanceof MongoBulkWriteException mbe) {
+                errors = mbe.getWriteErrors();
+            } else if (t instanceof BulkOperationException boe) {
+                errors = boe.getErrors();
+            }
+            if (errors != null) {
+                return Mono.just(mapper.apply(errors.stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage, (a, b) -> a))));
+            }
+        }
+        return Mono.error(e);
+    }
+
+    //documentos que coincidieron en un bulk con errores de escritura; sin el resultado parcial, ninguno seguro
+    private static int matchedCount(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof MongoBulkWriteException mbe) {
+                return mbe.getWriteResult().getMatchedCount();
+            }
+            if (t instanceof BulkOperationException boe) {
+                return boe.getResult().getMatchedCount();
+            }
+        }
+        return 0;
+    }
+
+    private record ReplaceOutcome(int matched, Map<Integer, String> errors) {
+    }
+
+    //crud.operations{entity, operation, outcome}
+    protected <R> Mono<R> timed(String operation, Mono<R> mono) {
+        return ReactiveMetrics.timed(mono, meterRegistry, "crud.operations", "entity", getEntityClass().getSimpleName(), "operation", operation);
+    }
+
+    protected <R> Flux<R> timed(String operation, Flux<R> flux) {
+        return ReactiveMetrics.timed(flux, meterRegistry, "crud.operations", "entity", getEntityClass().getSimpleName(), "operation", operation);
+    }
+
+    //ademas del timer, cuantos items termino cada bulk en cada estado (created, not_found, failed...)
+    private Mono<BulkResult> timedBulk(String operation, Mono<BulkResult> bulk) {
+        return timed(operation, bulk.doOnNext(result -> result.getItems().stream()
+                .collect(Collectors.groupingBy(BulkItemResult::getStatus, Collectors.counting()))
+                .forEach((status, count) -> meterRegistry.counter("crud.bulk.items",
+                        "entity", getEntityClass().getSimpleName(),
+                        "operation", operation,
+                        "status", status.name().toLowerCase()).increment(count))));
+    }
+
+    protected void evict(ID id) {
+        ReactiveCache<ID, T> cache = getCache();
+        if (cache != null && id != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    protected void cacheWrite(ID id, T saved) {
+        ReactiveCache<ID, T> cache = getCache();
+        if (cache == null || id == null) {
+            return;
+        }
+        if (cache.isWriteThrough() && saved != null) {
+            cache.put(id, saved);
+        } else {
+            cache.invalidate(id);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected ID getId(T t) {
+        return (ID) getPersistentEntity().getIdentifierAccessor(t).getIdentifier();
+    }
+
+    protected void setId(T t, ID id) {
+        MongoPersistentEntity<?> entity = getPersistentEntity();
+        entity.getPropertyAccessor(t).setProperty(entity.getRequiredIdProperty(), id);
+    }
+
+    protected Query byId(ID id) {
+        return Query.query(Criteria.where("_id").is(id));
+    }
+
+    private MongoPersistentEntity<?> getPersistentEntity() {
+        return mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(getEntityClass());
+    }
+
+    protected Mono<Long> count() {
+        //estimatedCount lee la metadata de la coleccion, no recorre documentos
+        return estimatedCount ? mongoTemplate.estimatedCount(getEntityClass()) : getRepo().count();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Class<T> getEntityClass() {
+        if (entityClass == null) {
+            entityClass = (Class<T>) GenericTypeResolver.resolveTypeArguments(getClass(), CRUDImpl.class)[0];
+        }
+        return entityClass;
+    }
 }
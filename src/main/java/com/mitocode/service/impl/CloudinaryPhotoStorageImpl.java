@@ -0,0 +1,52 @@
+package com.mitocode.service.impl;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import com.mitocode.service.IPhotoStorage;
+import org.cloudinary.json.JSONObject;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service
+@ConditionalOnProperty(name = "app.photo.storage", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryPhotoStorageImpl implements IPhotoStorage {
+
+    private final Cloudinary cloudinary;
+    private final Scheduler uploadScheduler;
+    private final int prefetch;
+
+    public CloudinaryPhotoStorageImpl(Cloudinary cloudinary,
+                                      @Qualifier("uploadScheduler") Scheduler uploadScheduler,
+                                      @Value("${app.upload.prefetch:4}") int prefetch) {
+        this.cloudinary = cloudinary;
+        this.uploadScheduler = uploadScheduler;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public Mono<String> store(String id, FilePart filePart) {
+        return Mono.fromCallable(() -> {
+                    //el cuerpo multipart se lee a demanda (prefetch buffers), sin copia a archivo temporal
+                    try (InputStream in = DataBufferUtils.subscriberInputStream(filePart.content(), prefetch)) {
+                        Map response = cloudinary.uploader().uploadLarge(in, ObjectUtils.asMap("resource_type", "auto"));
+                        JSONObject json = new JSONObject(response);
+                        return json.getString("url");
+                    }
+                })
+                .subscribeOn(uploadScheduler)
+                .onErrorMap(RejectedExecutionException.class,
+                        e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Upload queue is full", e));
+    }
+}
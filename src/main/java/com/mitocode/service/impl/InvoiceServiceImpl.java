@@ -1,22 +1,70 @@
 package com.mitocode.service.impl;
 
+import com.mitocode.bulk.BulkItemResult;
+import com.mitocode.bulk.BulkResult;
+import com.mitocode.cache.ReactiveCache;
+import com.mitocode.dto.ClientSalesDTO;
+import com.mitocode.dto.DishSalesDTO;
+import com.mitocode.dto.SalesPeriodDTO;
+import com.mitocode.metrics.ReactiveMetrics;
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
 import com.mitocode.model.Invoice;
 import com.mitocode.model.InvoiceDetail;
-import com.mitocode.repo.IClientRepo;
 import com.mitocode.repo.IDishRepo;
-import com.mitocode.repo.IInvoiceRepo;
 import com.mitocode.repo.IGenericRepo;
+import com.mitocode.repo.IInvoiceRepo;
+import com.mitocode.report.ReportRenderExecutor;
+import com.mitocode.report.ReportTemplateCache;
 import com.mitocode.service.IInvoiceService;
+import com.mitocode.service.InvoiceExpand;
+import com.mitocode.service.SalesPeriod;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
-import java.io.InputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 @RequiredArgsConstructor
@@ -24,8 +72,24 @@ public class InvoiceServiceImpl extends CRUDImpl<Invoice, String> implements IIn
 
 
     private final IInvoiceRepo invoiceRepo;
-    private final IClientRepo iClientRepo;
     private final IDishRepo iDishRepo;
+    private final ReportTemplateCache templateCache;
+    private final ReportRenderExecutor renderExecutor;
+
+    @Value("${app.invoice.dish-batch-size:500}")
+    private int dishBatchSize;
+
+    @Value("${app.invoice.hydrate-batch-size:256}")
+    private int hydrateBatchSize;
+
+    @Value("${app.report.batch.max-invoices:10000}")
+    private int batchMaxInvoices;
+
+    @Value("${app.report.batch.concurrency:2}")
+    private int batchConcurrency;
+
+    @Value("${app.report.batch.retries:5}")
+    private int batchRetries;
 
 
     @Override
@@ -33,48 +97,474 @@ public class InvoiceServiceImpl extends CRUDImpl<Invoice, String> implements IIn
         return invoiceRepo;
     }
 
-    private Mono<Invoice> populateClient(Invoice invoice) {
-        return iClientRepo.findById(invoice.getClient().getId())
-                .map(client -> {
-                    invoice.setClient(client);
-                    return invoice;
+    //Escritura: se guardan referencias (client._id, items.dish._id) y el precio cobrado por item.
+    //Una factura con un plato que no existe se rechaza: 400 en save/update, INVALID en las cargas masivas.
+    @Override
+    public Mono<Invoice> save(Invoice invoice) {
+        return compact(List.of(invoice), Map.of())
+                .flatMap(invalid -> invalid.isEmpty() ? super.save(invoice) : Mono.error(badRequest(invalid.get(0))));
+    }
+
+    @Override
+    public Mono<Invoice> update(String id, Invoice invoice) {
+        return chargedPrices(List.of(id))
+                .map(charged -> charged.getOrDefault(id, Map.of()))
+                .flatMap(charged -> compact(List.of(invoice), Map.of(0, charged)))
+                .flatMap(invalid -> invalid.isEmpty() ? super.update(id, invoice) : Mono.error(badRequest(invalid.get(0))));
+    }
+
+    @Override
+    public Mono<BulkResult> saveAll(List<Invoice> list) {
+        return compact(list, Map.of()).flatMap(invalid -> withoutInvalid(list, invalid, super::saveAll));
+    }
+
+    @Override
+    public Mono<BulkResult> bulkUpdate(List<Invoice> list) {
+        List<String> ids = list.stream().filter(Objects::nonNull).map(Invoice::getId).filter(Objects::nonNull).distinct().toList();
+        return chargedPrices(ids)
+                .map(charged -> {
+                    Map<Integer, Map<String, Double>> byPosition = new HashMap<>();
+                    for (int i = 0; i < list.size(); i++) {
+                        Invoice invoice = list.get(i);
+                        if (invoice != null && invoice.getId() != null) {
+                            byPosition.put(i, charged.getOrDefault(invoice.getId(), Map.of()));
+                        }
+                    }
+                    return byPosition;
+                })
+                .flatMap(charged -> compact(list, charged))
+                .flatMap(invalid -> withoutInvalid(list, invalid, super::bulkUpdate));
+    }
+
+    //Precio cobrado por plato en las facturas guardadas (id factura -> id plato -> precio). Al editar una factura
+    //sus items conservan ese precio; solo un plato que no estaba toma el precio actual.
+    private Mono<Map<String, Map<String, Double>>> chargedPrices(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return Flux.fromIterable(ids)
+                .buffer(dishBatchSize)
+                .concatMap(chunk -> {
+                    Query query = Query.query(Criteria.where("_id").in(chunk));
+                    query.fields().include("items");
+                    return mongoTemplate.find(query, Invoice.class);
+                })
+                .collectMap(Invoice::getId, InvoiceServiceImpl::chargedPrices);
+    }
+
+    private static Map<String, Double> chargedPrices(Invoice stored) {
+        Map<String, Double> prices = new HashMap<>();
+        if (stored.getItems() == null) {
+            return prices;
+        }
+        for (InvoiceDetail item : stored.getItems()) {
+            if (item == null || item.getDish() == null || item.getDish().getId() == null) {
+                continue;
+            }
+            //facturas sin migrar: el precio del plato embebido es el que se cobro
+            Double price = item.getPrice() != null ? item.getPrice() : item.getDish().getPrice();
+            if (price != null) {
+                prices.putIfAbsent(item.getDish().getId(), price);
+            }
+        }
+        return prices;
+    }
+
+    //Devuelve el motivo por posicion de las facturas que no se pueden guardar; las demas quedan compactadas.
+    //charged: precios ya cobrados por posicion (solo en updates), el resto usa el precio actual del plato.
+    private Mono<Map<Integer, String>> compact(List<Invoice> invoices, Map<Integer, Map<String, Double>> charged) {
+        //se verifican todas las referencias, no solo las que necesitan precio: un plato inexistente dejaria
+        //una referencia colgante (y sin precio)
+        List<String> ids = items(invoices)
+                .map(InvoiceDetail::getDish)
+                .filter(Objects::nonNull)
+                .map(Dish::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        return findDishes(ids).map(dishes -> {
+            Map<Integer, String> invalid = new HashMap<>();
+            for (int i = 0; i < invoices.size(); i++) {
+                Invoice invoice = invoices.get(i);
+                String missing = missingDish(invoice, dishes);
+                if (missing != null) {
+                    invalid.put(i, missing);
+                    continue;
+                }
+                if (invoice.getClient() != null) {
+                    invoice.setClient(clientRef(invoice.getClient().getId()));
+                }
+                if (invoice.getItems() != null) {
+                    Map<String, Double> previous = charged.getOrDefault(i, Map.of());
+                    invoice.getItems().forEach(item -> {
+                        if (item.getDish() == null) {
+                            return;
+                        }
+                        //el precio lo fija el servidor, nunca el cuerpo de la peticion: el ya cobrado o el actual del plato
+                        String dishId = item.getDish().getId();
+                        Double price = previous.get(dishId);
+                        item.setPrice(price != null ? price : dishes.get(dishId).getPrice());
+                        item.setDish(dishRef(dishId));
+                    });
+                }
+            }
+            return invalid;
+        });
+    }
+
+    private static String missingDish(Invoice invoice, Map<String, Dish> dishes) {
+        if (invoice == null || invoice.getItems() == null) {
+            return null;
+        }
+        for (int i = 0; i < invoice.getItems().size(); i++) {
+            Dish dish = invoice.getItems().get(i).getDish();
+            if (dish == null) {
+                continue;
+            }
+            if (dish.getId() == null) {
+                return "items[" + i + "].dish.id is required";
+            }
+            if (!dishes.containsKey(dish.getId())) {
+                return "items[" + i + "].dish " + dish.getId() + " does not exist";
+            }
+        }
+        return null;
+    }
+
+    //Solo las validas llegan al bulk; los indices del resultado siguen refiriendo a la lista recibida
+    private static Mono<BulkResult> withoutInvalid(List<Invoice> list, Map<Integer, String> invalid,
+                                                   Function<List<Invoice>, Mono<BulkResult>> operation) {
+        if (invalid.isEmpty()) {
+            return operation.apply(list);
+        }
+        List<Invoice> valid = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        List<BulkItemResult> results = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            if (invalid.containsKey(i)) {
+                Invoice invoice = list.get(i);
+                results.add(new BulkItemResult(i, invoice == null ? null : invoice.getId(), BulkItemResult.Status.INVALID, invalid.get(i)));
+            } else {
+                valid.add(list.get(i));
+                positions.add(i);
+            }
+        }
+        Mono<BulkResult> result = valid.isEmpty() ? Mono.just(BulkResult.of(List.of())) : operation.apply(valid);
+        return result.map(e -> {
+            e.getItems().forEach(item -> {
+                item.setIndex(positions.get(item.getIndex()));
+                results.add(item);
+            });
+            return BulkResult.of(results);
+        });
+    }
+
+    private static ResponseStatusException badRequest(String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+
+    //Lectura: resuelve solo lo pedido, por lotes ($in) y con proyeccion de los campos que se usan
+    @Override
+    public Mono<Invoice> hydrate(Invoice invoice, Set<InvoiceExpand> expand) {
+        return hydrate(Flux.just(invoice), expand).next();
+    }
+
+    @Override
+    public Flux<Invoice> hydrate(Flux<Invoice> invoices, Set<InvoiceExpand> expand) {
+        if (expand.isEmpty()) {
+            return invoices;
+        }
+        //concatMap conserva el orden (paginas, cursor, stream)
+        return invoices.buffer(hydrateBatchSize)
+                .concatMap(batch -> hydrateBatch(batch, expand));
+    }
+
+    private Flux<Invoice> hydrateBatch(List<Invoice> batch, Set<InvoiceExpand> expand) {
+        Mono<Map<String, Client>> clients = expand.contains(InvoiceExpand.CLIENT)
+                ? findClients(batch.stream()
+                        .map(Invoice::getClient)
+                        .filter(Objects::nonNull)
+                        .map(Client::getId)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList())
+                : Mono.just(Map.of());
+        Mono<Map<String, Dish>> dishes = expand.contains(InvoiceExpand.DISHES)
+                ? findDishes(items(batch)
+                        .map(InvoiceDetail::getDish)
+                        .filter(Objects::nonNull)
+                        .map(Dish::getId)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList())
+                : Mono.just(Map.of());
+
+        return Mono.zip(clients, dishes)
+                .flatMapIterable(tuple -> batch.stream()
+                        .map(invoice -> hydrated(invoice, tuple.getT1(), tuple.getT2()))
+                        .toList());
+    }
+
+    //copia: la instancia original puede estar en la cache de facturas
+    private Invoice hydrated(Invoice invoice, Map<String, Client> clients, Map<String, Dish> dishes) {
+        Client client = invoice.getClient() == null ? null
+                : clients.getOrDefault(invoice.getClient().getId(), invoice.getClient());
+        List<InvoiceDetail> items = invoice.getItems() == null ? null : invoice.getItems().stream()
+                .map(item -> new InvoiceDetail(
+                        item.getQuantity(),
+                        item.getDish() == null ? null : dishes.getOrDefault(item.getDish().getId(), item.getDish()),
+                        item.getPrice()))
+                .toList();
+        return new Invoice(invoice.getId(), invoice.getDescription(), client, items);
+    }
+
+    private Mono<Map<String, Client>> findClients(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        //solo lo que muestran la respuesta y el reporte
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include("firstName", "lastName");
+        return mongoTemplate.find(query, Client.class).collectMap(Client::getId);
+    }
+
+    //Mismos campos con y sin cache (id, nombre y precio): la respuesta de ?expand=dishes no depende de la configuracion
+    private Mono<Map<String, Dish>> findDishes(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        //con cache de platos configurada solo los ids ausentes van a Mongo (documento completo, es lo que guarda la cache)
+        ReactiveCache<String, Dish> cache = cacheRegistry.get(mongoTemplate.getCollectionName(Dish.class));
+        if (cache != null) {
+            Function<Collection<String>, Flux<Dish>> loader = keys -> Flux.fromIterable(keys)
+                    .buffer(dishBatchSize)
+                    .concatMap(chunk -> iDishRepo.findAllById(chunk));
+            //copias proyectadas: tampoco se entregan las instancias de la cache
+            return cache.getAll(ids, loader, Dish::getId)
+                    .map(cached -> cached.values().stream()
+                            .collect(Collectors.toMap(Dish::getId, InvoiceServiceImpl::dishView)));
+        }
+
+        //un solo $in por bloque de ids distintos en lugar de un findById por item
+        return Flux.fromIterable(ids)
+                .buffer(dishBatchSize)
+                .concatMap(chunk -> {
+                    Query query = Query.query(Criteria.where("_id").in(chunk));
+                    query.fields().include("name", "price");
+                    return mongoTemplate.find(query, Dish.class);
+                })
+                .collectMap(Dish::getId);
+    }
+
+    private static Dish dishView(Dish dish) {
+        return new Dish(dish.getId(), dish.getName(), dish.getPrice(), null);
+    }
+
+    private static Stream<InvoiceDetail> items(List<Invoice> invoices) {
+        return invoices.stream()
+                .map(Invoice::getItems)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream);
+    }
+
+    private static Client clientRef(String id) {
+        Client client = new Client();
+        client.setId(id);
+        return client;
+    }
+
+    private static Dish dishRef(String id) {
+        Dish dish = new Dish();
+        dish.setId(id);
+        return dish;
+    }
+
+    //Migracion: facturas con cliente/platos embebidos completos pasan al formato compacto en el servidor.
+    //El precio cobrado sale del plato embebido, que es el que estaba vigente al facturar.
+    @Override
+    public Mono<UpdateResult> compactStoredInvoices() {
+        Document legacy = new Document("$or", List.of(
+                new Document("client.firstName", new Document("$exists", true)),
+                new Document("items.dish.name", new Document("$exists", true))));
+
+        Document client = new Document("$cond", List.of(
+                new Document("$ifNull", List.of("$client", false)),
+                new Document("_id", "$client._id"),
+                "$$REMOVE"));
+        Document items = new Document("$cond", List.of(
+                new Document("$isArray", "$items"),
+                new Document("$map", new Document("input", "$items")
+                        .append("as", "item")
+                        .append("in", new Document("quantity", "$$item.quantity")
+                                .append("dish", new Document("_id", "$$item.dish._id"))
+                                .append("price", new Document("$ifNull", List.of("$$item.price", "$$item.dish.price")))))),
+                "$items"));
+
+        List<Document> pipeline = List.of(new Document("$set", new Document("client", client).append("items", items)));
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Invoice.class))
+                .flatMap(collection -> Mono.from(collection.updateMany(legacy, pipeline)))
+                //las facturas en cache conservan el formato anterior
+                .doOnSuccess(result -> {
+                    ReactiveCache<String, Invoice> cache = getCache();
+                    if (cache != null) {
+                        cache.invalidateAll();
+                    }
                 });
     }
 
-    private Mono<Invoice> populateItems(Invoice invoice) {
+    @Override
+    public Flux<DishSalesDTO> salesByDish(Instant from, Instant to, int limit) {
+        return aggregate("dishes", SalesPipelines.byDish(collection(Dish.class), from, to, limit), DishSalesDTO.class);
+    }
+
+    @Override
+    public Flux<ClientSalesDTO> topClients(Instant from, Instant to, int limit) {
+        return aggregate("clients", SalesPipelines.byClient(collection(Dish.class), collection(Client.class), from, to, limit),
+                ClientSalesDTO.class);
+    }
 
-        List<Mono<InvoiceDetail>> lst = invoice.getItems().stream()
-                .map(item -> iDishRepo.findById(item.getDish().getId())
-                        .map(dish -> {
-                            item.setDish(dish);
-                            return item;
-                        })
-                ).toList();
-        return Mono.when(lst).then(Mono.just(invoice));
+    @Override
+    public Flux<SalesPeriodDTO> salesByPeriod(Instant from, Instant to, SalesPeriod unit, ZoneId zone) {
+        return aggregate("periods", SalesPipelines.byPeriod(collection(Dish.class), from, to, unit, zone), SalesPeriodDTO.class);
     }
 
-    public byte[] generatePdfReport(Invoice invoice) {
-        try (InputStream inputStream = getClass().getResourceAsStream("/facturas.jrxml")) {
+    //Las filas salen del cursor a medida que Mongo las produce; allowDiskUse para rangos grandes en $group/$sort
+    private <R> Flux<R> aggregate(String report, List<Document> pipeline, Class<R> resultType) {
+        Flux<R> rows = mongoTemplate.getCollection(collection(Invoice.class))
+                .flatMapMany(collection -> collection.aggregate(pipeline).allowDiskUse(true))
+                .map(row -> mongoTemplate.getConverter().read(resultType, row));
+        return ReactiveMetrics.timed(rows, meterRegistry, "reports.sales", "report", report);
+    }
+
+    private String collection(Class<?> type) {
+        return mongoTemplate.getCollectionName(type);
+    }
+
+    //Fases del reporte en reports.phase{phase=load|fill|export}
+    private Mono<Invoice> loadForReport(String idInvoice) {
+        return ReactiveMetrics.timed(invoiceRepo.findById(idInvoice)
+                .flatMap(invoice -> hydrate(invoice, EnumSet.allOf(InvoiceExpand.class))), meterRegistry, "reports.phase", "phase", "load");
+    }
+
+    public JasperPrint fillReport(Invoice invoice) throws JRException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
             //generar PDF > mapas
             Map<String, Object> parameters = new HashMap<>();
             parameters.put("txt_client", invoice.getClient().getFirstName());
-            //compilar el archivo jasper
-            JasperReport jasperReport = JasperCompileManager.compileReport(inputStream);
+            //plantilla ya compilada (cache)
+            JasperReport jasperReport = templateCache.get();
             //poblar reporte : (archivo a compilar,bloque de parametros,lista a poblar de tipo fill)
             JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters,
                     new JRBeanCollectionDataSource(invoice.getItems()));
-            return JasperExportManager.exportReportToPdf(jasperPrint);
-        } catch (Exception e) {
-            return new byte[0];
+            outcome = "success";
+            return jasperPrint;
+        } finally {
+            sample.stop(ReactiveMetrics.timer(meterRegistry, "reports.phase", outcome, "phase", "fill"));
         }
     }
 
+    public void exportPdf(JasperPrint jasperPrint, OutputStream out) throws JRException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            JRPdfExporter exporter = new JRPdfExporter();
+            exporter.setExporterInput(new SimpleExporterInput(jasperPrint));
+            exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+            exporter.exportReport();
+            outcome = "success";
+        } finally {
+            sample.stop(ReactiveMetrics.timer(meterRegistry, "reports.phase", outcome, "phase", "export"));
+        }
+    }
+
+    public byte[] generatePdfReport(Invoice invoice) throws JRException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportPdf(fillReport(invoice), out);
+        return out.toByteArray();
+    }
+
     @Override
     public Mono<byte[]> generateReport(String idInvoice) {
-        return invoiceRepo.findById(idInvoice)
-                .flatMap(this::populateClient)
-                .flatMap(this::populateItems)
-                .map(this::generatePdfReport)
-                .onErrorResume(e-> Mono.empty());
+        return loadForReport(idInvoice)
+                .flatMap(invoice -> renderExecutor.submit(() -> generatePdfReport(invoice)));
+    }
+
+    @Override
+    public Mono<Flux<DataBuffer>> generateReportStream(String idInvoice, DataBufferFactory bufferFactory) {
+        return loadForReport(idInvoice)
+                .flatMap(invoice -> renderExecutor.submit(() -> fillReport(invoice)))
+                .map(jasperPrint -> renderExecutor.stream(out -> {
+                    try {
+                        exportPdf(jasperPrint, out);
+                    } catch (JRException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                }, bufferFactory));
+    }
+
+    //Facturas por lotes (hydrate) -> PDFs en paralelo en el pool de render -> entradas del ZIP en orden.
+    //En memoria solo quedan los PDFs en vuelo (batch.concurrency), no el lote completo.
+    @Override
+    public Mono<Flux<DataBuffer>> generateReportZip(Criteria filter, DataBufferFactory bufferFactory) {
+        return mongoTemplate.count(new Query(filter), Invoice.class)
+                .flatMap(total -> {
+                    if (total == 0) {
+                        return Mono.empty();
+                    }
+                    if (total > batchMaxInvoices) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                "Batch matches " + total + " invoices, the limit is " + batchMaxInvoices));
+                    }
+                    Query query = new Query(filter).with(Sort.by("_id")).cursorBatchSize(hydrateBatchSize);
+                    Flux<ReportEntry> entries = hydrate(mongoTemplate.find(query, Invoice.class), EnumSet.allOf(InvoiceExpand.class))
+                            .flatMapSequential(this::renderEntry, batchConcurrency, 1);
+                    return Mono.just(ReactiveMetrics.timed(renderExecutor.archive(out -> writeZip(entries, out), bufferFactory),
+                            meterRegistry, "reports.batch"));
+                });
+    }
+
+    private Mono<ReportEntry> renderEntry(Invoice invoice) {
+        return renderExecutor.submit(() -> generatePdfReport(invoice))
+                //la cola de render puede estar llena por otras peticiones: el lote espera en lugar de cortarse a la mitad.
+                //Un timeout (504) no se reintenta: ese PDF tardaria lo mismo otra vez
+                .retryWhen(Retry.backoff(batchRetries, Duration.ofSeconds(1)).filter(ReportRenderExecutor::isQueueFull))
+                .map(pdf -> new ReportEntry("invoice-" + invoice.getId() + ".pdf", pdf))
+                //una factura que no se puede renderizar no invalida el ZIP: queda un .txt con el motivo
+                .onErrorResume(e -> Mono.just(new ReportEntry("invoice-" + invoice.getId() + ".error.txt",
+                        String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8))));
+    }
+
+    //Corre en el hilo del escritor (boundedElastic). toStream pide de a una entrada: si el cliente lee lento,
+    //write bloquea y no se renderizan mas PDFs; cerrar el Stream (error o cancelacion) cancela el resto del lote.
+    private static void writeZip(Flux<ReportEntry> entries, OutputStream out) {
+        try (Stream<ReportEntry> stream = entries.toStream(1)) {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            Iterator<ReportEntry> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                ReportEntry entry = iterator.next();
+                //STORED: un PDF ya viene comprimido, deflate gastaria CPU sin reducir el tamano
+                CRC32 crc = new CRC32();
+                crc.update(entry.content());
+                ZipEntry zipEntry = new ZipEntry(entry.name());
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(entry.content().length);
+                zipEntry.setCompressedSize(entry.content().length);
+                zipEntry.setCrc(crc.getValue());
+                zip.putNextEntry(zipEntry);
+                zip.write(entry.content());
+                zip.closeEntry();
+            }
+            //finish y no close: el OutputStream lo cierra outputStreamPublisher
+            zip.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record ReportEntry(String name, byte[] content) {
     }
 }
@@ -0,0 +1,50 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.service.IPhotoStorage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+@Service
+@ConditionalOnProperty(name = "app.photo.storage", havingValue = "local")
+public class LocalPhotoStorageImpl implements IPhotoStorage {
+
+    private final Path baseDir;
+
+    public LocalPhotoStorageImpl(@Value("${app.photo.local-dir:${java.io.tmpdir}/photos}") String baseDir) {
+        this.baseDir = Paths.get(baseDir).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.baseDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Mono<String> store(String id, FilePart filePart) {
+        String extension = StringUtils.getFilenameExtension(filePart.filename());
+        String name = id.replaceAll("[^A-Za-z0-9_-]", "_")
+                + (extension == null ? "" : "." + extension.replaceAll("[^A-Za-z0-9]", ""));
+        Path target = baseDir.resolve(name);
+
+        //escritura asincrona (AsynchronousFileChannel) directo desde los buffers del multipart
+        return DataBufferUtils.write(filePart.content(), target,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                .thenReturn(target.toUri().toString())
+                .onErrorResume(e -> Mono.fromCallable(() -> Files.deleteIfExists(target))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then(Mono.error(e)));
+    }
+}
@@ -0,0 +1,133 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.service.SalesPeriod;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pipelines de ventas sobre invoices.items.
+ * Ingreso por linea = quantity * precio cobrado (items.price). Las facturas sin migrar usan el precio del plato
+ * embebido y, si no hay ninguno, el precio actual del plato (dishes.price). Ese $lookup se hace despues de agrupar
+ * por (clave, plato), asi que cuesta una lectura por grupo y no una por factura.
+ * La ventana de tiempo sale del _id (ObjectId lleva la fecha de creacion) y usa el indice _id.
+ */
+final class SalesPipelines {
+
+    private static final Document PRICE = new Document("$ifNull", List.of("$items.price", "$items.dish.price"));
+    //cualquier numero es > null; un campo ausente no
+    private static final Document PRICED = new Document("$gt", Arrays.asList(PRICE, null));
+
+    private SalesPipelines() {
+    }
+
+    static List<Document> byDish(String dishes, Instant from, Instant to, int limit) {
+        List<Document> pipeline = lines(from, to, "$items.dish._id");
+        pipeline.add(lookup(dishes, "_id.dish", "dish"));
+        pipeline.add(addUnpricedRevenue("$dish.price"));
+        pipeline.add(new Document("$sort", new Document("revenue", -1)));
+        pipeline.add(new Document("$limit", limit));
+        pipeline.add(new Document("$project", new Document("_id", 0)
+                .append("dishId", new Document("$toString", "$_id.dish"))
+                .append("nameDish", new Document("$arrayElemAt", List.of("$dish.name", 0)))
+                .append("lines", 1)
+                .append("quantity", 1)
+                .append("revenue", 1)));
+        return pipeline;
+    }
+
+    static List<Document> byClient(String dishes, String clients, Instant from, Instant to, int limit) {
+        List<Document> pipeline = lines(from, to, "$client._id");
+        pipeline.addAll(totalsByKey(dishes));
+        pipeline.add(new Document("$sort", new Document("revenue", -1)));
+        pipeline.add(new Document("$limit", limit));
+        //solo los clientes que quedaron en el top
+        pipeline.add(lookup(clients, "_id", "client"));
+        pipeline.add(new Document("$project", new Document("_id", 0)
+                .append("clientId", new Document("$toString", "$_id"))
+                .append("nameClient", new Document("$arrayElemAt", List.of("$client.firstName", 0)))
+                .append("surnameClient", new Document("$arrayElemAt", List.of("$client.lastName", 0)))
+                .append("invoices", 1)
+                .append("quantity", 1)
+                .append("revenue", 1)));
+        return pipeline;
+    }
+
+    static List<Document> byPeriod(String dishes, Instant from, Instant to, SalesPeriod unit, ZoneId zone) {
+        Document period = new Document("$dateToString", new Document("format", unit.format())
+                .append("date", new Document("$toDate", "$_id"))
+                .append("timezone", zone.getId()));
+        List<Document> pipeline = lines(from, to, period);
+        pipeline.addAll(totalsByKey(dishes));
+        pipeline.add(new Document("$sort", new Document("_id", 1)));
+        pipeline.add(new Document("$project", new Document("_id", 0)
+                .append("period", "$_id")
+                .append("invoices", 1)
+                .append("quantity", 1)
+                .append("revenue", 1)));
+        return pipeline;
+    }
+
+    //Una fila por (clave, plato). line == 0 marca el primer item de cada factura: todos los items de una factura
+    //comparten cliente y fecha, asi que sumar esas filas cuenta cada factura una sola vez
+    private static List<Document> lines(Instant from, Instant to, Object key) {
+        List<Document> pipeline = new ArrayList<>();
+        Document window = new Document();
+        if (from != null) {
+            window.append("$gte", boundary(from));
+        }
+        if (to != null) {
+            window.append("$lt", boundary(to));
+        }
+        if (!window.isEmpty()) {
+            pipeline.add(new Document("$match", new Document("_id", window)));
+        }
+        pipeline.add(new Document("$unwind", new Document("path", "$items").append("includeArrayIndex", "line")));
+        pipeline.add(new Document("$group", new Document("_id", new Document("key", key).append("dish", "$items.dish._id"))
+                .append("invoices", new Document("$sum", new Document("$cond", List.of(new Document("$eq", List.of("$line", 0)), 1, 0))))
+                .append("lines", new Document("$sum", 1))
+                .append("quantity", new Document("$sum", "$items.quantity"))
+                .append("revenue", new Document("$sum", new Document("$multiply", List.of("$items.quantity",
+                        new Document("$cond", List.of(PRICED, PRICE, 0))))))
+                .append("unpriced", new Document("$sum", new Document("$cond", List.of(PRICED, 0, "$items.quantity"))))));
+        return pipeline;
+    }
+
+    //Completa el ingreso de las lineas sin precio y vuelve a agrupar solo por la clave
+    private static List<Document> totalsByKey(String dishes) {
+        List<Document> pipeline = new ArrayList<>();
+        //sin lineas sin precio el campo no existe y el $lookup no encuentra nada (busqueda por _id null)
+        pipeline.add(new Document("$set", new Document("fallbackDish",
+                new Document("$cond", List.of(new Document("$gt", List.of("$unpriced", 0)), "$_id.dish", "$$REMOVE")))));
+        pipeline.add(lookup(dishes, "fallbackDish", "dish"));
+        pipeline.add(addUnpricedRevenue("$dish.price"));
+        pipeline.add(new Document("$group", new Document("_id", "$_id.key")
+                .append("invoices", new Document("$sum", "$invoices"))
+                .append("quantity", new Document("$sum", "$quantity"))
+                .append("revenue", new Document("$sum", "$revenue"))));
+        return pipeline;
+    }
+
+    private static Document addUnpricedRevenue(String currentPrices) {
+        Document currentPrice = new Document("$ifNull", List.of(new Document("$arrayElemAt", List.of(currentPrices, 0)), 0));
+        return new Document("$set", new Document("revenue",
+                new Document("$add", List.of("$revenue", new Document("$multiply", List.of("$unpriced", currentPrice))))));
+    }
+
+    private static Document lookup(String from, String localField, String as) {
+        return new Document("$lookup", new Document("from", from)
+                .append("localField", localField)
+                .append("foreignField", "_id")
+                .append("as", as));
+    }
+
+    //menor ObjectId con esa fecha: timestamp en segundos y el resto en ceros
+    static ObjectId boundary(Instant instant) {
+        return new ObjectId(String.format("%08x%016x", instant.getEpochSecond(), 0));
+    }
+}
@@ -0,0 +1,336 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.metrics.ReactiveMetrics;
+import com.mitocode.model.Invoice;
+import com.mitocode.model.SalesContribution;
+import com.mitocode.model.SalesContribution.DishLine;
+import com.mitocode.model.SalesContribution.Increment;
+import com.mitocode.model.SalesRollup;
+import com.mitocode.service.ISalesRollupService;
+import com.mitocode.service.RollupType;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+//Mantiene sales_rollups a partir de la diferencia entre lo que una factura aporta ahora y lo que aporto antes
+//(sales_contributions). Ingreso por linea = quantity * items.price (o el precio del plato embebido en facturas sin migrar).
+//Change stream: contribucion, rollups y resume token en una transaccion. Polling (mongod standalone, sin transacciones):
+//primero se guarda la contribucion con la marca pending y cada $inc solo suma si el rollup aun no tiene esa marca en ops.
+@Service
+public class SalesRollupServiceImpl implements ISalesRollupService {
+
+    private static final String STATE_COLLECTION = "sales_rollup_state";
+    private static final String STATE_ID = "invoices";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final TransactionalOperator transactions;
+    private final ZoneId zone;
+    private final int batchSize;
+
+    public SalesRollupServiceImpl(ReactiveMongoTemplate mongoTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.sales.zone:UTC}") String zone,
+                                  @Value("${app.rollups.batch-size:500}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        //solo se usa con change streams, que ya exigen replica set (y por lo tanto admiten transacciones)
+        this.transactions = TransactionalOperator.create(new ReactiveMongoTransactionManager(mongoTemplate.getMongoDatabaseFactory()));
+        this.zone = ZoneId.of(zone);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Mono<SalesRollup> findOne(RollupType type, String key) {
+        return mongoTemplate.findById(type.id(key), SalesRollup.class);
+    }
+
+    @Override
+    public Flux<SalesRollup> top(RollupType type, int limit) {
+        Query query = Query.query(Criteria.where("type").is(type.key()))
+                .with(Sort.by(Sort.Direction.DESC, "revenue"))
+                .limit(limit);
+        return mongoTemplate.find(query, SalesRollup.class);
+    }
+
+    @Override
+    public Flux<SalesRollup> days(LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("type").is(RollupType.DAY.key());
+        if (from != null || to != null) {
+            //la clave yyyy-MM-dd ordena igual que la fecha
+            Criteria key = criteria.and("key");
+            if (from != null) {
+                key.gte(from.toString());
+            }
+            if (to != null) {
+                key.lt(to.toString());
+            }
+        }
+        return mongoTemplate.find(Query.query(criteria).with(Sort.by("key")), SalesRollup.class);
+    }
+
+    @Override
+    public Mono<Void> applyChange(String invoiceId, Document invoice, BsonValue resumeToken) {
+        SalesContribution next = invoice == null ? null : contribution(invoice);
+        //rollups, contribucion y resume token en la misma transaccion: un evento se aplica exactamente una vez
+        Mono<Void> work = mongoTemplate.findById(invoiceId, SalesContribution.class)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(previous -> apply(invoiceId, previous.orElse(null), next))
+                .then(saveResumeToken(resumeToken));
+        return ReactiveMetrics.timed(transactions.transactional(work), meterRegistry, "rollups.apply", "source", "change-stream");
+    }
+
+    @Override
+    public Mono<Long> reconcile() {
+        Query query = new Query();
+        query.fields().include("client._id", "items");
+        //lo pendiente va primero: la contribucion guardada ya es la nueva y no sirve de base para otra diferencia
+        Mono<Long> invoices = settlePending()
+                .thenMany(mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Invoice.class)))
+                .buffer(batchSize)
+                .concatMap(this::reconcileBatch)
+                .reduce(0L, Long::sum);
+        return ReactiveMetrics.timed(invoices.flatMap(changed -> sweepDeleted().map(deleted -> changed + deleted)),
+                meterRegistry, "rollups.reconcile");
+    }
+
+    @Override
+    public Mono<Long> settlePending() {
+        return mongoTemplate.find(Query.query(Criteria.where("pending").exists(true)), SalesContribution.class)
+                .concatMap(contribution -> settle(contribution).thenReturn(1L))
+                .count();
+    }
+
+    private Mono<Long> reconcileBatch(List<Document> batch) {
+        List<Object> ids = batch.stream().map(invoice -> invoice.get("_id")).toList();
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), SalesContribution.class)
+                .collectMap(SalesContribution::getId)
+                .flatMap(previous -> Flux.fromIterable(batch)
+                        .map(this::contribution)
+                        .filter(next -> !next.equals(previous.get(next.getId())))
+                        .concatMap(next -> applyOnce(previous.get(next.getId()), next).thenReturn(1L))
+                        .count());
+    }
+
+    //contribuciones de facturas que ya no existen (en polling no hay evento delete)
+    private Mono<Long> sweepDeleted() {
+        String invoices = mongoTemplate.getCollectionName(Invoice.class);
+        return mongoTemplate.findAll(SalesContribution.class)
+                .buffer(batchSize)
+                .concatMap(batch -> {
+                    Query existing = Query.query(Criteria.where("_id").in(batch.stream().map(c -> toObjectId(c.getId())).toList()));
+                    existing.fields().include("_id");
+                    return mongoTemplate.find(existing, Document.class, invoices)
+                            .map(invoice -> id(invoice.get("_id")))
+                            .collect(Collectors.toSet())
+                            .flatMapMany(found -> Flux.fromIterable(batch).filter(c -> !found.contains(c.getId())))
+                            .concatMap(deleted -> applyOnce(deleted, null).thenReturn(1L));
+                })
+                .count();
+    }
+
+    //Dentro de la transaccion del change stream: todo o nada
+    private Mono<Void> apply(String invoiceId, SalesContribution previous, SalesContribution next) {
+        List<Increment> increments = increments(previous, next);
+
+        Mono<Void> store = next == null
+                ? mongoTemplate.remove(Query.query(Criteria.where("_id").is(invoiceId)), SalesContribution.class).then()
+                : next.equals(previous) ? Mono.empty() : mongoTemplate.save(next).then();
+
+        return Flux.fromIterable(increments)
+                .concatMap(increment -> increment(increment, null))
+                .then(store)
+                .thenMany(Flux.fromIterable(increments))
+                .concatMap(increment -> release(increment, null))
+                .then();
+    }
+
+    //Sin transaccion (polling): primero la contribucion con los incrementos pendientes y despues los rollups
+    private Mono<Void> applyOnce(SalesContribution previous, SalesContribution next) {
+        List<Increment> increments = increments(previous, next);
+        if (increments.isEmpty()) {
+            return next == null
+                    ? mongoTemplate.remove(Query.query(Criteria.where("_id").is(previous.getId())), SalesContribution.class).then()
+                    : mongoTemplate.save(next).then();
+        }
+        SalesContribution marked = next == null ? previous : next;
+        marked.setDeleted(next == null);
+        marked.setPending(new ObjectId().toHexString());
+        marked.setIncrements(increments);
+        return mongoTemplate.save(marked).flatMap(this::settle);
+    }
+
+    //Reaplicar es seguro: un rollup que ya tiene la marca no coincide con el filtro y no vuelve a sumar
+    private Mono<Void> settle(SalesContribution contribution) {
+        String op = contribution.getPending();
+        List<Increment> increments = Optional.ofNullable(contribution.getIncrements()).orElse(List.of());
+        Query byId = Query.query(Criteria.where("_id").is(contribution.getId()));
+        Mono<Void> done = contribution.isDeleted()
+                ? mongoTemplate.remove(byId, SalesContribution.class).then()
+                : mongoTemplate.updateFirst(byId, new Update().unset("pending").unset("increments"), SalesContribution.class).then();
+        //la marca se quita despues de cerrar la contribucion: si cae entre ambos pasos queda una marca huerfana
+        //en ops (no afecta los totales, cada aplicacion usa una marca nueva)
+        return Flux.fromIterable(increments)
+                .concatMap(increment -> increment(increment, op))
+                .then(done)
+                .thenMany(Flux.fromIterable(increments))
+                .concatMap(increment -> release(increment, op))
+                .then();
+    }
+
+    private Mono<Void> increment(Increment increment, String op) {
+        String[] key = increment.getRollup().split(":", 2);
+        Criteria criteria = Criteria.where("_id").is(increment.getRollup());
+        Update update = new Update()
+                .inc("invoices", increment.getInvoices())
+                .inc("quantity", increment.getQuantity())
+                .inc("revenue", increment.getRevenue())
+                .setOnInsert("type", key[0])
+                .setOnInsert("key", key[1]);
+        if (op == null) {
+            return mongoTemplate.upsert(Query.query(criteria), update, SalesRollup.class).then();
+        }
+        criteria.and("ops").ne(op);
+        update.push("ops", op);
+        //el rollup existe y ya tiene la marca: el upsert intenta insertar el mismo _id, el incremento ya estaba aplicado
+        return mongoTemplate.upsert(Query.query(criteria), update, SalesRollup.class).then()
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+    }
+
+    private Mono<Void> release(Increment increment, String op) {
+        Query byId = Query.query(Criteria.where("_id").is(increment.getRollup()));
+        Mono<Void> unmark = op == null
+                ? Mono.empty()
+                : mongoTemplate.updateFirst(byId, new Update().pull("ops", op), SalesRollup.class).then();
+        //un plato/cliente/dia sin facturas deja de aparecer en el dashboard
+        return increment.getInvoices() < 0
+                ? unmark.then(mongoTemplate.remove(Query.query(Criteria.where("_id").is(increment.getRollup()).and("invoices").lte(0)), SalesRollup.class).then())
+                : unmark;
+    }
+
+    private static List<Increment> increments(SalesContribution previous, SalesContribution next) {
+        Map<String, Totals> delta = new LinkedHashMap<>();
+        add(delta, previous, -1);
+        add(delta, next, 1);
+        return delta.entrySet().stream()
+                .filter(entry -> !entry.getValue().isZero())
+                .map(entry -> new Increment(entry.getKey(), entry.getValue().invoices(), entry.getValue().quantity(), entry.getValue().revenue()))
+                .toList();
+    }
+
+    private static void add(Map<String, Totals> delta, SalesContribution contribution, int sign) {
+        if (contribution == null) {
+            return;
+        }
+        Totals invoice = new Totals(sign, sign * contribution.getQuantity(), sign * contribution.getRevenue());
+        if (contribution.getClient() != null) {
+            delta.merge(RollupType.CLIENT.id(contribution.getClient()), invoice, Totals::plus);
+        }
+        if (contribution.getDay() != null) {
+            delta.merge(RollupType.DAY.id(contribution.getDay()), invoice, Totals::plus);
+        }
+        for (DishLine line : contribution.getDishes()) {
+            delta.merge(RollupType.DISH.id(line.getDish()),
+                    new Totals(sign, sign * line.getQuantity(), sign * line.getRevenue()), Totals::plus);
+        }
+    }
+
+    //Documento crudo (change stream o find) -> aporte de la factura
+    SalesContribution contribution(Document invoice) {
+        Object rawId = invoice.get("_id");
+        String day = rawId instanceof ObjectId objectId
+                ? LocalDate.ofInstant(objectId.getDate().toInstant(), zone).toString()
+                : null;
+        Object client = invoice.get("client") instanceof Document embedded ? embedded.get("_id") : null;
+
+        long quantity = 0;
+        double revenue = 0;
+        Map<String, DishLine> dishes = new LinkedHashMap<>();
+        for (Object value : invoice.getList("items", Object.class, List.of())) {
+            if (!(value instanceof Document item)) {
+                continue;
+            }
+            Document dish = item.get("dish") instanceof Document embedded ? embedded : null;
+            long lineQuantity = item.get("quantity") instanceof Number number ? number.longValue() : 0;
+            Object price = item.get("price") != null ? item.get("price") : dish == null ? null : dish.get("price");
+            double lineRevenue = price instanceof Number number ? lineQuantity * number.doubleValue() : 0;
+
+            quantity += lineQuantity;
+            revenue += lineRevenue;
+            if (dish != null && dish.get("_id") != null) {
+                String dishId = id(dish.get("_id"));
+                dishes.merge(dishId, new DishLine(dishId, lineQuantity, lineRevenue),
+                        (a, b) -> new DishLine(dishId, a.getQuantity() + b.getQuantity(), a.getRevenue() + b.getRevenue()));
+            }
+        }
+        return new SalesContribution(id(rawId), client == null ? null : id(client), day, quantity, revenue,
+                new ArrayList<>(dishes.values()));
+    }
+
+    @Override
+    public Mono<BsonValue> resumeToken() {
+        return mongoTemplate.findById(STATE_ID, Document.class, STATE_COLLECTION)
+                .mapNotNull(state -> state.getString("resumeToken"))
+                .map(data -> new BsonDocument("_data", new BsonString(data)));
+    }
+
+    @Override
+    public Mono<Void> clearResumeToken() {
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").is(STATE_ID)), STATE_COLLECTION).then();
+    }
+
+    private Mono<Void> saveResumeToken(BsonValue token) {
+        if (token == null || !token.isDocument() || !token.asDocument().isString("_data")) {
+            return Mono.empty();
+        }
+        Update update = Update.update("resumeToken", token.asDocument().getString("_data").getValue())
+                .set("updatedAt", Instant.now());
+        return mongoTemplate.upsert(Query.query(Criteria.where("_id").is(STATE_ID)), update, STATE_COLLECTION).then();
+    }
+
+    private static String id(Object id) {
+        return id instanceof ObjectId objectId ? objectId.toHexString() : Objects.toString(id, null);
+    }
+
+    private static Object toObjectId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    private record Totals(long invoices, long quantity, double revenue) {
+
+        Totals plus(Totals other) {
+            return new Totals(invoices + other.invoices, quantity + other.quantity, revenue + other.revenue);
+        }
+
+        boolean isZero() {
+            return invoices == 0 && quantity == 0 && revenue == 0;
+        }
+    }
+}
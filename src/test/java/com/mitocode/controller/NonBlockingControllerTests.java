@@ -0,0 +1,178 @@
+package com.mitocode.controller;
+
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import com.mitocode.model.InvoiceDetail;
+import com.mitocode.pagination.CursorPageSupport;
+import com.mitocode.pagination.PageSupport;
+import com.mitocode.service.IClientService;
+import com.mitocode.service.IDishService;
+import com.mitocode.service.IInvoiceService;
+import com.mitocode.service.IPhotoStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+//Las respuestas de los mocks llegan en hilos parallel (no bloqueantes) y el controller corre en el event loop
+//de Netty: si alguna ruta llama a block() o a E/S sincrona, BlockHound la corta y el endpoint devuelve 500.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class NonBlockingControllerTests {
+
+    private static final String ID = "65b7f3a1c2d4e5f6a7b8c9d0";
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean
+    private IDishService dishService;
+
+    @MockBean
+    private IClientService clientService;
+
+    @MockBean
+    private IInvoiceService invoiceService;
+
+    @MockBean
+    private IPhotoStorage photoStorage;
+
+    @BeforeEach
+    void setUp() {
+        Dish dish = new Dish(ID, "Ceviche", 25.0, true);
+        Client cli = new Client(ID, "Jaime", "Medina", LocalDate.of(1990, 1, 1), null);
+        Invoice invoice = new Invoice(ID, "Mesa 1", cli, List.of(new InvoiceDetail(2, dish, 12.5)));
+
+        when(dishService.findAll()).thenReturn(async(Flux.just(dish)));
+        when(dishService.findById(ID)).thenReturn(async(Mono.just(dish)));
+        when(dishService.update(eq(ID), any())).thenReturn(async(Mono.just(dish)));
+        when(dishService.delete(ID)).thenReturn(async(Mono.just(true)));
+        when(dishService.getPage(any())).thenReturn(async(Mono.just(new PageSupport<>(List.of(dish), 0, 2, 1))));
+        when(dishService.findAll(anySet())).thenReturn(async(Flux.just(dish)));
+        when(dishService.findById(eq(ID), anySet())).thenReturn(async(Mono.just(dish)));
+        when(dishService.getPage(any(), any(), anySet())).thenReturn(async(Mono.just(new PageSupport<>(List.of(dish), 0, 2, 1))));
+        when(dishService.getCursorPage(isNull(), anyInt())).thenReturn(async(Mono.just(new CursorPageSupport<>(List.of(dish), 10, null))));
+
+        when(clientService.findAll()).thenReturn(async(Flux.just(cli)));
+        when(clientService.findById(ID)).thenReturn(async(Mono.just(cli)));
+        when(clientService.update(eq(ID), any())).thenReturn(async(Mono.just(cli)));
+        when(clientService.delete(ID)).thenReturn(async(Mono.just(true)));
+        when(clientService.getPage(any())).thenReturn(async(Mono.just(new PageSupport<>(List.of(cli), 0, 2, 1))));
+        when(clientService.findAll(anySet())).thenReturn(async(Flux.just(cli)));
+        when(clientService.findById(eq(ID), anySet())).thenReturn(async(Mono.just(cli)));
+        when(clientService.getPage(any(), any(), anySet())).thenReturn(async(Mono.just(new PageSupport<>(List.of(cli), 0, 2, 1))));
+        when(clientService.getCursorPage(isNull(), anyInt())).thenReturn(async(Mono.just(new CursorPageSupport<>(List.of(cli), 10, null))));
+
+        when(invoiceService.findAll()).thenReturn(async(Flux.just(invoice)));
+        when(invoiceService.findById(ID)).thenReturn(async(Mono.just(invoice)));
+        when(invoiceService.update(eq(ID), any())).thenReturn(async(Mono.just(invoice)));
+        when(invoiceService.delete(ID)).thenReturn(async(Mono.just(true)));
+        when(invoiceService.getPage(any())).thenReturn(async(Mono.just(new PageSupport<>(List.of(invoice), 0, 2, 1))));
+        when(invoiceService.findAll(anySet())).thenReturn(async(Flux.just(invoice)));
+        when(invoiceService.findById(eq(ID), anySet())).thenReturn(async(Mono.just(invoice)));
+        when(invoiceService.getPage(any(), any(), anySet())).thenReturn(async(Mono.just(new PageSupport<>(List.of(invoice), 0, 2, 1))));
+        when(invoiceService.hydrate(any(Invoice.class), anySet())).thenAnswer(inv -> async(Mono.just(inv.getArgument(0))));
+        when(invoiceService.hydrate(ArgumentMatchers.<Flux<Invoice>>any(), anySet())).thenAnswer(inv -> inv.getArgument(0));
+        when(invoiceService.getCursorPage(isNull(), anyInt())).thenReturn(async(Mono.just(new CursorPageSupport<>(List.of(invoice), 10, null))));
+    }
+
+    @Test
+    void dishRoutesDoNotBlock() {
+        Map<String, Object> body = Map.of("nameDish", "Ceviche", "priceDish", 25.0, "statusDish", true);
+        assertReadRoutes("/dishes");
+        client.put().uri("/dishes/" + ID).contentType(MediaType.APPLICATION_JSON).bodyValue(body)
+                .exchange().expectStatus().isOk();
+        client.delete().uri("/dishes/" + ID).exchange().expectStatus().isNoContent();
+    }
+
+    @Test
+    void clientRoutesDoNotBlock() {
+        Map<String, Object> body = Map.of("nameClient", "Jaime", "surnameClient", "Medina", "birthDateClient", "1990-01-01");
+        assertReadRoutes("/clients");
+        client.put().uri("/clients/" + ID).contentType(MediaType.APPLICATION_JSON).bodyValue(body)
+                .exchange().expectStatus().isOk();
+        client.delete().uri("/clients/" + ID).exchange().expectStatus().isNoContent();
+    }
+
+    @Test
+    void uploadDoesNotMutateTheClientItRead() {
+        //con cache de clientes la instancia de findById es la de la cache
+        Client cached = new Client(ID, "Jaime", "Medina", LocalDate.of(1990, 1, 1), null);
+        when(clientService.findById(ID)).thenReturn(async(Mono.just(cached)));
+        when(photoStorage.store(eq(ID), any())).thenReturn(async(Mono.just("https://photos/" + ID + ".png")));
+        when(clientService.update(eq(ID), any())).thenAnswer(inv -> async(Mono.just(inv.getArgument(1))));
+
+        MultipartBodyBuilder multipart = new MultipartBodyBuilder();
+        multipart.part("file", new ByteArrayResource(new byte[]{1, 2, 3})).filename("photo.png");
+
+        client.post().uri("/clients/v2/upload/" + ID).contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(multipart.build()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.urlPhotoClient").isEqualTo("https://photos/" + ID + ".png");
+        assertThat(cached.getUrlPhoto()).isNull();
+    }
+
+    @Test
+    void invoiceRoutesDoNotBlock() {
+        Map<String, Object> body = Map.of("description", "Mesa 1", "client", Map.of("id", ID),
+                "items", List.of(Map.of("quantity", 2, "dish", Map.of("id", ID))));
+        assertReadRoutes("/invoices");
+        client.put().uri("/invoices/" + ID).contentType(MediaType.APPLICATION_JSON).bodyValue(body)
+                .exchange().expectStatus().isOk();
+        client.delete().uri("/invoices/" + ID).exchange().expectStatus().isNoContent();
+    }
+
+    @Test
+    void batchReportRouteDoesNotBlock() {
+        when(invoiceService.generateReportZip(any(), any()))
+                .thenReturn(async(Mono.just(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(new byte[]{'P', 'K'})))));
+
+        client.post().uri("/invoices/generateReports").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("ids", List.of(ID), "filter", List.of("client.id:eq:" + ID)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/zip");
+        //sin ids ni filtro se rechaza (seria la coleccion completa)
+        client.post().uri("/invoices/generateReports").contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of())
+                .exchange().expectStatus().isBadRequest();
+    }
+
+    private void assertReadRoutes(String base) {
+        client.get().uri(base).exchange().expectStatus().isOk();
+        client.get().uri(base + "/" + ID).exchange().expectStatus().isOk();
+        client.get().uri(base + "/pageable").exchange().expectStatus().isOk();
+        client.get().uri(base + "/cursor").exchange().expectStatus().isOk();
+    }
+
+    private static <T> Mono<T> async(Mono<T> mono) {
+        return mono.delayElement(Duration.ofMillis(1));
+    }
+
+    private static <T> Flux<T> async(Flux<T> flux) {
+        return flux.delayElements(Duration.ofMillis(1));
+    }
+}
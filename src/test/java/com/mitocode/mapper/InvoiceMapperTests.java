@@ -0,0 +1,54 @@
+package com.mitocode.mapper;
+
+import com.mitocode.dto.DishDTO;
+import com.mitocode.dto.InvoiceDetailDTO;
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import com.mitocode.model.InvoiceDetail;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Formato compacto (plato solo con id y precio cobrado) frente a ?expand=dishes
+class InvoiceMapperTests {
+
+    private final InvoiceMapper invoiceMapper = Mappers.getMapper(InvoiceMapper.class);
+
+    @Test
+    void compactItemKeepsDishIdAndPriceSnapshot() {
+        Dish ref = new Dish();
+        ref.setId("d1");
+        Invoice invoice = new Invoice("i1", "Mesa 4", client(), List.of(new InvoiceDetail(2, ref, 25.5)));
+
+        assertThat(invoiceMapper.toDto(invoice).getItems().get(0))
+                .isEqualTo(new InvoiceDetailDTO(2, new DishDTO("d1", null, null, null), 25.5));
+    }
+
+    @Test
+    void expandedItemCarriesResolvedDish() {
+        Invoice invoice = new Invoice("i1", "Mesa 4", client(),
+                List.of(new InvoiceDetail(2, new Dish("d1", "Ceviche", 25.5, null), 20.0)));
+
+        assertThat(invoiceMapper.toExpandedDto(invoice).getItems().get(0))
+                .isEqualTo(new InvoiceDetailDTO(2, new DishDTO("d1", "Ceviche", 25.5, null), 20.0));
+        //sin expand el mismo plato resuelto viaja solo con su id
+        assertThat(invoiceMapper.toDto(invoice).getItems().get(0).getDish())
+                .isEqualTo(new DishDTO("d1", null, null, null));
+    }
+
+    @Test
+    void requestPriceIsNotMapped() {
+        InvoiceDetailDTO item = new InvoiceDetailDTO(2, new DishDTO("d1", null, null, null), 0.01);
+
+        //el precio cobrado lo fija el servicio
+        assertThat(invoiceMapper.itemToDocument(item).getPrice()).isNull();
+    }
+
+    private static Client client() {
+        return new Client("c1", "Jaime", "Medina", null, null);
+    }
+}
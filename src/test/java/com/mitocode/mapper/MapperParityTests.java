@@ -0,0 +1,108 @@
+package com.mitocode.mapper;
+
+import com.mitocode.config.MapperConfig;
+import com.mitocode.dto.ClientDTO;
+import com.mitocode.dto.DishDTO;
+import com.mitocode.dto.InvoiceDTO;
+import com.mitocode.dto.InvoiceDetailDTO;
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import com.mitocode.model.InvoiceDetail;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Los mappers generados deben producir exactamente lo mismo que los ModelMapper de MapperConfig
+class MapperParityTests {
+
+    private final MapperConfig config = new MapperConfig();
+
+    private final ModelMapper defaultMapper = config.defaultMapper();
+    private final ModelMapper clientModelMapper = config.clientMapper();
+    private final ModelMapper invoiceModelMapper = config.invoiceMapper();
+
+    private final ClientMapper clientMapper = Mappers.getMapper(ClientMapper.class);
+    private final DishMapper dishMapper = Mappers.getMapper(DishMapper.class);
+    private final InvoiceMapper invoiceMapper = Mappers.getMapper(InvoiceMapper.class);
+
+    @Test
+    void clientToDto() {
+        Client client = client();
+
+        assertThat(clientMapper.toDto(client))
+                .isEqualTo(clientModelMapper.map(client, ClientDTO.class));
+    }
+
+    @Test
+    void clientToDocument() {
+        ClientDTO dto = new ClientDTO("c1", "Jaime", "Medina", LocalDate.of(1990, 5, 17), "http://foto/c1.png");
+
+        assertThat(clientMapper.toDocument(dto))
+                .usingRecursiveComparison()
+                .isEqualTo(clientModelMapper.map(dto, Client.class));
+    }
+
+    @Test
+    void dishToDto() {
+        Dish dish = dish();
+
+        assertThat(dishMapper.toDto(dish))
+                .isEqualTo(defaultMapper.map(dish, DishDTO.class));
+    }
+
+    @Test
+    void dishToDocument() {
+        DishDTO dto = new DishDTO("d1", "Ceviche", 25.5, true);
+
+        assertThat(dishMapper.toDocument(dto))
+                .usingRecursiveComparison()
+                .isEqualTo(defaultMapper.map(dto, Dish.class));
+    }
+
+    @Test
+    void invoiceToDto() {
+        Invoice invoice = new Invoice("i1", "Mesa 4", client(),
+                List.of(new InvoiceDetail(2, dish(), null), new InvoiceDetail(1, new Dish("d2", "Arroz", 12.0, false), null)));
+
+        InvoiceDTO expected = invoiceModelMapper.map(invoice, InvoiceDTO.class);
+        InvoiceDTO actual = invoiceMapper.toDto(invoice);
+
+        assertThat(actual).isEqualTo(expected);
+        //STRICT: el cliente sin fecha ni foto y el plato solo con id
+        assertThat(actual.getClient().getBirthDateClient()).isNull();
+        assertThat(actual.getItems().get(0).getDish()).isEqualTo(new DishDTO("d1", null, null, null));
+    }
+
+    @Test
+    void invoiceToDocument() {
+        InvoiceDTO dto = new InvoiceDTO("i1", "Mesa 4",
+                new ClientDTO("c1", "Jaime", "Medina", LocalDate.of(1990, 5, 17), "http://foto/c1.png"),
+                List.of(new InvoiceDetailDTO(3, new DishDTO("d1", "Ceviche", 25.5, true), null)));
+
+        assertThat(invoiceMapper.toDocument(dto))
+                .usingRecursiveComparison()
+                .isEqualTo(invoiceModelMapper.map(dto, Invoice.class));
+    }
+
+    @Test
+    void nullsAreKept() {
+        assertThat(clientMapper.toDto(new Client()))
+                .isEqualTo(clientModelMapper.map(new Client(), ClientDTO.class));
+        assertThat(dishMapper.toDto(new Dish()))
+                .isEqualTo(defaultMapper.map(new Dish(), DishDTO.class));
+    }
+
+    private Client client() {
+        return new Client("c1", "Jaime", "Medina", LocalDate.of(1990, 5, 17), "http://foto/c1.png");
+    }
+
+    private Dish dish() {
+        return new Dish("d1", "Ceviche", 25.5, true);
+    }
+}
@@ -0,0 +1,49 @@
+package com.mitocode.projection;
+
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ApiFieldsTests {
+
+    @Test
+    void withoutFieldsReadsWholeDocument() {
+        assertThat(ApiFields.select(Dish.class, null).isAll()).isTrue();
+        assertThat(ApiFields.select(Dish.class, " ").isAll()).isTrue();
+    }
+
+    @Test
+    void translatesDtoNamesToDocumentPaths() {
+        FieldSelection selection = ApiFields.select(Dish.class, "nameDish,priceDish");
+
+        assertThat(selection.documentFields()).containsExactlyInAnyOrder("_id", "name", "price");
+        assertThat(selection.expansions()).isEmpty();
+    }
+
+    @Test
+    void referenceFieldsProjectIdAndRequireExpansion() {
+        FieldSelection selection = ApiFields.select(Invoice.class, "description,client.nameClient,items.dish.id");
+
+        assertThat(selection.documentFields())
+                .containsExactlyInAnyOrder("_id", "description", "client._id", "items.dish._id");
+        assertThat(selection.expansions()).containsExactly("client");
+    }
+
+    @Test
+    void parentPathWinsOverNestedPath() {
+        FieldSelection selection = ApiFields.select(Invoice.class, "items,items.price");
+
+        assertThat(selection.documentFields()).containsExactlyInAnyOrder("_id", "items");
+    }
+
+    @Test
+    void unknownFieldIsRejected() {
+        assertThatThrownBy(() -> ApiFields.select(Dish.class, "nameDish,cost"))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("cost");
+    }
+}
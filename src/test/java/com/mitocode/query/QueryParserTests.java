@@ -0,0 +1,109 @@
+package com.mitocode.query;
+
+import com.mitocode.model.Client;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import com.mitocode.mongo.MongoIndexManager;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//Los indices se resuelven de las anotaciones de los documentos: no hace falta un Mongo levantado
+class QueryParserTests {
+
+    private final QueryParser parser = parser();
+
+    @Test
+    void filtersAreTypedAndTranslated() {
+        QuerySpec spec = parser.parse(Dish.class, List.of("statusDish:eq:true"), null);
+
+        assertThat(spec.criteria().getCriteriaObject()).isEqualTo(new Document("status", true));
+        assertThat(spec.sort().isUnsorted()).isTrue();
+    }
+
+    @Test
+    void clausesOnTheSameFieldBuildARange() {
+        String id = new ObjectId().toHexString();
+        QuerySpec spec = parser.parse(Client.class, List.of("id:gt:" + id, "id:lte:" + id), null);
+
+        assertThat(spec.criteria().getCriteriaObject())
+                .isEqualTo(new Document("_id", new Document("$gt", new ObjectId(id)).append("$lte", new ObjectId(id))));
+    }
+
+    @Test
+    void invoicesCanBeFilteredByClientId() {
+        String id = new ObjectId().toHexString();
+        QuerySpec spec = parser.parse(Invoice.class, List.of("client.id:eq:" + id), "-client.id");
+
+        assertThat(spec.criteria().getCriteriaObject()).isEqualTo(new Document("client._id", new ObjectId(id)));
+    }
+
+    @Test
+    void sortBackedByIndexAfterEqualityPrefix() {
+        //status_name_id_idx {status, name, _id}: con status fijo el indice ya entrega el orden por nombre
+        QuerySpec spec = parser.parse(Dish.class, List.of("statusDish:eq:true"), "-nameDish");
+
+        assertThat(spec.sort()).isEqualTo(Sort.by(Sort.Order.desc("name"), Sort.Order.desc("_id")));
+    }
+
+    @Test
+    void sortOnRepeatedKeysEndsWithTheIndexTieBreaker() {
+        //muchos clientes comparten apellido: se completa con las claves del indice hasta _id
+        QuerySpec spec = parser.parse(Client.class, null, "-surnameClient");
+
+        assertThat(spec.sort()).isEqualTo(Sort.by(Sort.Order.desc("lastName"), Sort.Order.desc("firstName"), Sort.Order.desc("_id")));
+        assertThat(parser.parse(Client.class, null, "-id").sort()).isEqualTo(Sort.by(Sort.Order.desc("_id")));
+    }
+
+    @Test
+    void unindexedSortIsRejected() {
+        assertThatThrownBy(() -> parser.parse(Dish.class, null, "nameDish"))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("index");
+        assertThatThrownBy(() -> parser.parse(Client.class, null, "surnameClient,-nameClient"))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("index");
+    }
+
+    @Test
+    void fieldsOutsideTheWhitelistAreRejected() {
+        assertThatThrownBy(() -> parser.parse(Dish.class, List.of("priceDish:gt:10"), null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("priceDish");
+        assertThatThrownBy(() -> parser.parse(Invoice.class, List.of("client.nameClient:eq:Jaime"), null))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> parser.parse(Dish.class, null, "priceDish"))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void invalidValuesAreRejected() {
+        assertThatThrownBy(() -> parser.parse(Dish.class, List.of("statusDish:eq:yes"), null))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> parser.parse(Dish.class, List.of("statusDish:eq:true", "statusDish:eq:false"), null))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    private static QueryParser parser() {
+        ReactiveMongoTemplate template = mock(ReactiveMongoTemplate.class);
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setInitialEntitySet(Set.of(Client.class, Dish.class, Invoice.class));
+        mappingContext.initialize();
+        when(template.getConverter()).thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+        return new QueryParser(template, new MongoIndexManager(template));
+    }
+}
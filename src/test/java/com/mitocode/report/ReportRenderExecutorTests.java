@@ -0,0 +1,166 @@
+package com.mitocode.report;
+
+import com.mitocode.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportRenderExecutorTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    //un solo hilo de render: si el primer reporte no se interrumpe el segundo no llega a correr
+    private final ReportRenderExecutor executor = new ReportRenderExecutor(registry, 1, 10, 100, 5, 8192, 1, 1, 200, 200);
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void timeoutInterruptsTheRenderAndFreesTheThread() {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Mono<String> slow = executor.submit(() -> {
+            //como el fill de Jasper: avanza hasta que el hilo se interrumpe
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.onSpinWait();
+            }
+            interrupted.set(true);
+            throw new IllegalStateException("fill interrupted");
+        });
+
+        StepVerifier.create(slow)
+                .expectErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode())
+                        .isEqualTo(HttpStatus.GATEWAY_TIMEOUT))
+                .verify(Duration.ofSeconds(5));
+
+        StepVerifier.create(executor.submit(() -> "next"))
+                .expectNext("next")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(interrupted).isTrue();
+        assertThat(registry.get("reports.render.active").gauge().value()).isZero();
+        assertThat(registry.get("reports.render.timeouts").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledBeforeStartingNeverRenders() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean rendered = new AtomicBoolean();
+        //ocupa el unico hilo de render
+        executor.submit(() -> release.await(5, TimeUnit.SECONDS)).subscribe();
+
+        executor.submit(() -> rendered.getAndSet(true)).subscribe().dispose();
+        release.countDown();
+
+        StepVerifier.create(executor.submit(() -> "next"))
+                .expectNext("next")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(rendered).isFalse();
+        assertThat(registry.get("reports.render.queued").gauge().value()).isZero();
+    }
+
+    @Test
+    void stalledDownloadIsCutAndFreesItsSlot() throws InterruptedException {
+        CountDownLatch cut = new CountDownLatch(1);
+        //lee un chunk y deja de pedir: con export.max-active=1 ocupa el unico cupo
+        BaseSubscriber<DataBuffer> stalled = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                cut.countDown();
+            }
+        };
+        pdf().subscribe(stalled);
+
+        StepVerifier.create(pdf())
+                .expectError(ServiceBusyException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(cut.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitReleased("reports.export.active");
+        StepVerifier.create(pdf())
+                .thenConsumeWhile(buffer -> true)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(registry.get("reports.export.active").gauge().value()).isZero();
+        //el rechazo de la descarga no cuenta como cola de render llena
+        assertThat(registry.get("reports.export.rejected").counter().count()).isEqualTo(1);
+        assertThat(registry.get("reports.render.rejected").counter().count()).isZero();
+    }
+
+    @Test
+    void stalledBatchDownloadIsCutAndFreesItsSlot() throws InterruptedException {
+        CountDownLatch cut = new CountDownLatch(1);
+        //batch.max-active=1: un lote que el cliente deja de leer no debe bloquear los siguientes
+        archive().subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                cut.countDown();
+            }
+        });
+
+        assertThat(cut.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitReleased("reports.batch.active");
+        StepVerifier.create(archive())
+                .thenConsumeWhile(buffer -> true)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(registry.get("reports.batch.active").gauge().value()).isZero();
+    }
+
+    //el cupo se libera en doFinally, despues de que el suscriptor ya recibio el error
+    private void awaitReleased(String gauge) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get(gauge).gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private Flux<DataBuffer> archive() {
+        return executor.archive(out -> {
+            try {
+                out.write(new byte[64 * 1024]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, DefaultDataBufferFactory.sharedInstance);
+    }
+
+    private Flux<DataBuffer> pdf() {
+        return executor.stream(out -> {
+            try {
+                out.write(new byte[64 * 1024]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, DefaultDataBufferFactory.sharedInstance);
+    }
+}
@@ -0,0 +1,51 @@
+package com.mitocode.rollup;
+
+import com.mitocode.service.ISalesRollupService;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SalesRollupListenerTests {
+
+    private final ReactiveMongoTemplate template = mock(ReactiveMongoTemplate.class);
+    private final ISalesRollupService rollups = mock(ISalesRollupService.class);
+    private final SalesRollupListener listener = new SalesRollupListener(template, rollups);
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+
+    @Test
+    void autoOnStandaloneDoesNotFallBackToPolling() {
+        //hello de un mongod standalone: sin setName
+        when(template.executeCommand(any(Document.class))).thenReturn(Mono.just(new Document("isWritablePrimary", true)));
+        ReflectionTestUtils.setField(listener, "mode", "auto");
+        ReflectionTestUtils.setField(listener, "pollIntervalMillis", 10L);
+
+        listener.start();
+
+        verify(rollups, never()).reconcile();
+    }
+
+    @Test
+    void pollingMustBeRequested() {
+        when(rollups.reconcile()).thenReturn(Mono.just(0L));
+        ReflectionTestUtils.setField(listener, "mode", "polling");
+        ReflectionTestUtils.setField(listener, "pollIntervalMillis", 10L);
+
+        listener.start();
+
+        verify(rollups, timeout(1000).atLeastOnce()).reconcile();
+    }
+}
@@ -0,0 +1,120 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.bulk.BulkItemResult;
+import com.mitocode.bulk.BulkItemResult.Status;
+import com.mitocode.bulk.BulkResult;
+import com.mitocode.cache.CacheProperties;
+import com.mitocode.cache.CrudCacheRegistry;
+import com.mitocode.model.Dish;
+import com.mitocode.repo.IDishRepo;
+import com.mitocode.repo.IGenericRepo;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CRUDImplBulkTests {
+
+    private static final String A = "65b7f3a1c2d4e5f6a7b8c9d0";
+    private static final String B = "65b7f3a1c2d4e5f6a7b8c9d1";
+    private static final String C = "65b7f3a1c2d4e5f6a7b8c9d2";
+
+    private ReactiveMongoTemplate template;
+    private CRUDImpl<Dish, String> crud;
+
+    @BeforeEach
+    void setUp() {
+        template = mock(ReactiveMongoTemplate.class);
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        when(template.getConverter()).thenReturn(converter);
+
+        IDishRepo repo = mock(IDishRepo.class);
+        crud = new CRUDImpl<>() {
+            @Override
+            protected IGenericRepo<Dish, String> getRepo() {
+                return repo;
+            }
+        };
+        crud.mongoTemplate = template;
+        crud.cacheRegistry = new CrudCacheRegistry(new CacheProperties(), new SimpleMeterRegistry());
+        crud.meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(crud, "bulkBatchSize", 2);
+    }
+
+    @Test
+    void duplicatedIdIsDeletedOnce() {
+        existing(A);
+        deleted(1);
+
+        BulkResult result = crud.bulkDelete(List.of(A, A, C)).block();
+
+        assertThat(result.getItems()).extracting(BulkItemResult::getStatus)
+                .containsExactly(Status.DELETED, Status.INVALID, Status.NOT_FOUND);
+        assertThat(result.getSucceeded()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentDeleteIsNotReportedAsDeleted() {
+        //A y B existian en la consulta previa, pero el remove solo borro uno
+        existing(A, B);
+        deleted(1);
+
+        BulkResult result = crud.bulkDelete(List.of(A, B)).block();
+
+        assertThat(result.getItems()).extracting(BulkItemResult::getStatus)
+                .containsExactly(Status.UNCERTAIN, Status.UNCERTAIN);
+        assertThat(result.getSucceeded()).isZero();
+    }
+
+    @Test
+    void replaceOfConcurrentlyDeletedDocumentIsNotReportedAsUpdated() {
+        //A y B existian en la consulta previa, pero el replace solo encontro uno
+        existing(A, B);
+        ReactiveBulkOperations ops = mock(ReactiveBulkOperations.class);
+        when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, Dish.class)).thenReturn(ops);
+        when(ops.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of())));
+
+        BulkResult result = crud.bulkUpdate(List.of(new Dish(A, "Ceviche", 25.0, true), new Dish(B, "Chicha", 8.0, true))).block();
+
+        assertThat(result.getItems()).extracting(BulkItemResult::getStatus)
+                .containsExactly(Status.UNCERTAIN, Status.UNCERTAIN);
+        assertThat(result.getSucceeded()).isZero();
+    }
+
+    @Test
+    void batchSizeMustBePositive() {
+        ReflectionTestUtils.setField(crud, "bulkBatchSize", 0);
+
+        assertThatThrownBy(crud::validateBulkBatchSize).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void existing(String... ids) {
+        when(template.find(any(Query.class), eq(Dish.class)))
+                .thenReturn(Flux.fromArray(ids).map(id -> new Dish(id, null, null, null)));
+    }
+
+    private void deleted(long count) {
+        when(template.remove(any(Query.class), eq(Dish.class))).thenReturn(Mono.just(DeleteResult.acknowledged(count)));
+    }
+}
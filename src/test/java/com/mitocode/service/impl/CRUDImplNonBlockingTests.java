@@ -0,0 +1,136 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.cache.CacheProperties;
+import com.mitocode.cache.CrudCacheRegistry;
+import com.mitocode.model.Dish;
+import com.mitocode.repo.IDishRepo;
+import com.mitocode.repo.IGenericRepo;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//Cada operacion de CRUDImpl se ejecuta en Schedulers.parallel(); BlockHound (instalado por
+//blockhound-junit-platform) convierte cualquier llamada bloqueante en un error del StepVerifier.
+class CRUDImplNonBlockingTests {
+
+    private static final String ID = "65b7f3a1c2d4e5f6a7b8c9d0";
+
+    private final Dish dish = new Dish(ID, "Ceviche", 25.0, true);
+    private IDishRepo repo;
+    private CRUDImpl<Dish, String> crud;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(IDishRepo.class);
+        ReactiveMongoTemplate template = mock(ReactiveMongoTemplate.class);
+
+        when(repo.save(any(Dish.class))).thenReturn(async(Mono.just(dish)));
+        when(repo.findById(ID)).thenReturn(async(Mono.just(dish)));
+        when(repo.findAll()).thenReturn(async(Flux.just(dish)));
+        when(repo.findAllBy(any())).thenReturn(async(Flux.just(dish)));
+        when(repo.count()).thenReturn(async(Mono.just(1L)));
+        when(template.find(any(Query.class), eq(Dish.class))).thenReturn(async(Flux.just(dish)));
+        when(template.findAndReplace(any(Query.class), any(Dish.class), any(FindAndReplaceOptions.class)))
+                .thenReturn(async(Mono.just(dish)));
+        when(template.remove(any(Query.class), eq(Dish.class))).thenReturn(async(Mono.just(DeleteResult.acknowledged(1))));
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        when(template.getConverter()).thenReturn(converter);
+
+        crud = new CRUDImpl<>() {
+            @Override
+            protected IGenericRepo<Dish, String> getRepo() {
+                return repo;
+            }
+        };
+        crud.mongoTemplate = template;
+        crud.cacheRegistry = new CrudCacheRegistry(new CacheProperties(), new SimpleMeterRegistry());
+        crud.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void blockHoundIsInstalled() {
+        Mono<Long> blocking = Mono.delay(Duration.ofMillis(1))
+                .doOnNext(e -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                });
+
+        StepVerifier.create(blocking)
+                .expectError(BlockingOperationError.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void writesDoNotBlock() {
+        verify(crud.save(dish));
+        verify(crud.update(ID, dish));
+        verify(crud.delete(ID));
+    }
+
+    @Test
+    void readsDoNotBlock() {
+        verify(crud.findById(ID));
+        verify(crud.findAll());
+        verify(crud.getPage(PageRequest.of(0, 2)));
+        verify(crud.getCursorPage(null, 2));
+    }
+
+    @Test
+    void invalidCursorIsAnErrorSignal() {
+        //no lanza al armar el flujo: el error llega al suscribirse, como el resto de CRUDImpl
+        Mono<?> page = crud.getCursorPage("not-a-cursor", 2);
+
+        StepVerifier.create(page)
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(ResponseStatusException.class)
+                        .extracting(ex -> ((ResponseStatusException) ex).getStatusCode())
+                        .isEqualTo(HttpStatus.BAD_REQUEST))
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private static void verify(Mono<?> mono) {
+        StepVerifier.create(mono.subscribeOn(Schedulers.parallel()))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    private static void verify(Flux<?> flux) {
+        StepVerifier.create(flux.subscribeOn(Schedulers.parallel()))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    private static <T> Mono<T> async(Mono<T> mono) {
+        return mono.delayElement(Duration.ofMillis(1));
+    }
+
+    private static <T> Flux<T> async(Flux<T> flux) {
+        return flux.delayElements(Duration.ofMillis(1));
+    }
+}
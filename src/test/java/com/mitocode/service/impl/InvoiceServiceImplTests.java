@@ -0,0 +1,152 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.cache.CacheProperties;
+import com.mitocode.cache.CrudCacheRegistry;
+import com.mitocode.exception.ServiceBusyException;
+import com.mitocode.model.Dish;
+import com.mitocode.model.Invoice;
+import com.mitocode.model.InvoiceDetail;
+import com.mitocode.repo.IDishRepo;
+import com.mitocode.repo.IInvoiceRepo;
+import com.mitocode.report.ReportRenderExecutor;
+import com.mitocode.service.InvoiceExpand;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InvoiceServiceImplTests {
+
+    private ReactiveMongoTemplate template;
+    private IInvoiceRepo invoiceRepo;
+    private IDishRepo dishRepo;
+    private ReportRenderExecutor renderExecutor;
+    private InvoiceServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        template = mock(ReactiveMongoTemplate.class);
+        invoiceRepo = mock(IInvoiceRepo.class);
+        dishRepo = mock(IDishRepo.class);
+        when(template.getCollectionName(Dish.class)).thenReturn("dishes");
+        when(template.getCollectionName(Invoice.class)).thenReturn("invoices");
+
+        renderExecutor = mock(ReportRenderExecutor.class);
+        service = new InvoiceServiceImpl(invoiceRepo, dishRepo, null, renderExecutor);
+        service.mongoTemplate = template;
+        service.meterRegistry = new SimpleMeterRegistry();
+        service.cacheRegistry = new CrudCacheRegistry(new CacheProperties(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "dishBatchSize", 500);
+        ReflectionTestUtils.setField(service, "hydrateBatchSize", 256);
+        ReflectionTestUtils.setField(service, "batchRetries", 5);
+    }
+
+    @Test
+    void invoiceWithUnknownDishIsRejected() {
+        when(template.find(any(Query.class), eq(Dish.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(service.save(invoice("d9", null)))
+                .expectErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST))
+                .verify();
+        verify(invoiceRepo, never()).save(any(Invoice.class));
+    }
+
+    @Test
+    void clientPriceIsReplacedByCurrentDishPrice() {
+        when(template.find(any(Query.class), eq(Dish.class))).thenReturn(Flux.just(new Dish("d1", "Ceviche", 25.0, null)));
+        when(invoiceRepo.save(any(Invoice.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+
+        Invoice saved = service.save(invoice("d1", 0.01)).block();
+
+        assertThat(saved.getItems().get(0).getPrice()).isEqualTo(25.0);
+    }
+
+    @Test
+    void updateKeepsThePriceAlreadyCharged() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        when(template.getConverter()).thenReturn(converter);
+        //el plato subio de 20 a 25 despues de facturar; d2 se agrega en la edicion
+        when(template.find(any(Query.class), eq(Dish.class)))
+                .thenReturn(Flux.just(new Dish("d1", "Ceviche", 25.0, null), new Dish("d2", "Chicha", 8.0, null)));
+        when(template.find(any(Query.class), eq(Invoice.class))).thenReturn(Flux.just(invoiceWithId("i1", "d1", 20.0)));
+        when(template.findAndReplace(any(Query.class), any(Invoice.class), any(FindAndReplaceOptions.class)))
+                .thenAnswer(call -> Mono.just(call.getArgument(1)));
+
+        Invoice edited = invoice("d1", 0.01);
+        Dish added = new Dish();
+        added.setId("d2");
+        edited.setItems(List.of(edited.getItems().get(0), new InvoiceDetail(2, added, 0.01)));
+        Invoice updated = service.update("i1", edited).block();
+
+        assertThat(updated.getItems()).extracting(InvoiceDetail::getPrice).containsExactly(20.0, 8.0);
+    }
+
+    @Test
+    void cachedDishesAreProjectedLikeMongoLookups() {
+        CacheProperties properties = new CacheProperties();
+        properties.getEntities().put("dishes", new CacheProperties.Spec());
+        service.cacheRegistry = new CrudCacheRegistry(properties, new SimpleMeterRegistry());
+        Dish cached = new Dish("d1", "Ceviche", 25.0, true);
+        when(dishRepo.findAllById(anyIterable())).thenReturn(Flux.just(cached));
+
+        Invoice hydrated = service.hydrate(invoice("d1", 20.0), EnumSet.of(InvoiceExpand.DISHES)).block();
+
+        Dish dish = hydrated.getItems().get(0).getDish();
+        //sin cache la consulta solo trae name y price: statusDish no debe aparecer por tener cache
+        assertThat(dish).usingRecursiveComparison().isEqualTo(new Dish("d1", "Ceviche", 25.0, null));
+        assertThat(dish).isNotSameAs(cached);
+    }
+
+    @Test
+    void batchRetriesFullQueueButNotTimeouts() {
+        AtomicInteger renders = new AtomicInteger();
+        //primero la cola llena, despues un render que excede el timeout
+        when(renderExecutor.submit(any())).thenReturn(Mono.defer(() -> renders.incrementAndGet() == 1
+                ? Mono.error(new ServiceBusyException("Report queue is full", 5, new RejectedExecutionException()))
+                : Mono.error(new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Report rendering timed out"))));
+
+        Mono<?> entry = ReflectionTestUtils.invokeMethod(service, "renderEntry", invoice("d1", 20.0));
+
+        //el lote sigue con un .error.txt en lugar de renderizar 5 veces el mismo PDF lento
+        StepVerifier.create(entry).expectNextCount(1).verifyComplete();
+        assertThat(renders).hasValue(2);
+    }
+
+    private static Invoice invoiceWithId(String id, String dishId, Double price) {
+        Invoice invoice = invoice(dishId, price);
+        invoice.setId(id);
+        return invoice;
+    }
+
+    private static Invoice invoice(String dishId, Double price) {
+        Dish ref = new Dish();
+        ref.setId(dishId);
+        return new Invoice(null, "Mesa 1", null, List.of(new InvoiceDetail(1, ref, price)));
+    }
+}
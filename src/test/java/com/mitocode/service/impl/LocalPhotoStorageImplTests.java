@@ -0,0 +1,61 @@
+package com.mitocode.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LocalPhotoStorageImplTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void storesStreamedPartsUnderClientId() throws IOException {
+        FilePart part = filePart("../foto.png", Flux.just(buffer("abc"), buffer("def")));
+        LocalPhotoStorageImpl storage = new LocalPhotoStorageImpl(dir.toString());
+
+        String url = storage.store("65b7f3a1c2d4e5f6a7b8c9d0", part).block();
+
+        Path stored = Path.of(URI.create(url));
+        assertThat(stored.getParent()).isEqualTo(dir.toAbsolutePath().normalize());
+        assertThat(stored.getFileName().toString()).isEqualTo("65b7f3a1c2d4e5f6a7b8c9d0.png");
+        assertThat(Files.readString(stored)).isEqualTo("abcdef");
+    }
+
+    @Test
+    void removesPartialFileWhenUploadFails() {
+        FilePart part = filePart("foto.png", Flux.concat(Flux.just(buffer("abc")), Flux.error(new IOException("reset"))));
+        LocalPhotoStorageImpl storage = new LocalPhotoStorageImpl(dir.toString());
+
+        StepVerifier.create(storage.store("1", part))
+                .expectError(IOException.class)
+                .verify();
+
+        assertThat(dir.resolve("1.png")).doesNotExist();
+    }
+
+    private static FilePart filePart(String filename, Flux<DataBuffer> content) {
+        FilePart part = mock(FilePart.class);
+        when(part.filename()).thenReturn(filename);
+        when(part.content()).thenReturn(content);
+        return part;
+    }
+
+    private static DataBuffer buffer(String value) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,88 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.service.SalesPeriod;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Forma completa de las etapas; el resultado contra un mongod real esta en SalesPipelinesIT (perfil load-test)
+class SalesPipelinesTests {
+
+    @Test
+    void boundaryIsTheSmallestObjectIdOfThatSecond() {
+        Instant instant = Instant.parse("2024-03-15T05:00:00Z");
+        ObjectId boundary = SalesPipelines.boundary(instant);
+
+        assertThat(boundary.getDate().toInstant()).isEqualTo(instant);
+        assertThat(boundary.toHexString()).endsWith("0000000000000000");
+        assertThat(new ObjectId(Date.from(instant))).isGreaterThanOrEqualTo(boundary);
+    }
+
+    @Test
+    void windowFiltersOnIdBeforeUnwinding() {
+        Instant from = Instant.parse("2024-03-01T00:00:00Z");
+        List<Document> pipeline = SalesPipelines.byPeriod("dishes", from, null, SalesPeriod.MONTH, ZoneId.of("UTC"));
+
+        assertThat(pipeline.get(0))
+                .isEqualTo(new Document("$match", new Document("_id", new Document("$gte", SalesPipelines.boundary(from)))));
+        assertThat(pipeline.get(1)).containsKey("$unwind");
+    }
+
+    @Test
+    void linesAreGroupedByKeyAndDishWithChargedOrEmbeddedPrice() {
+        Document price = new Document("$ifNull", List.of("$items.price", "$items.dish.price"));
+        Document priced = new Document("$gt", Arrays.asList(price, null));
+
+        List<Document> pipeline = SalesPipelines.byClient("dishes", "clients", null, null, 5);
+
+        assertThat(pipeline.get(0)).isEqualTo(new Document("$unwind", new Document("path", "$items").append("includeArrayIndex", "line")));
+        assertThat(pipeline.get(1)).isEqualTo(new Document("$group", new Document("_id", new Document("key", "$client._id").append("dish", "$items.dish._id"))
+                //solo el primer item cuenta la factura
+                .append("invoices", new Document("$sum", new Document("$cond", List.of(new Document("$eq", List.of("$line", 0)), 1, 0))))
+                .append("lines", new Document("$sum", 1))
+                .append("quantity", new Document("$sum", "$items.quantity"))
+                .append("revenue", new Document("$sum", new Document("$multiply", List.of("$items.quantity",
+                        new Document("$cond", List.of(priced, price, 0))))))
+                //sin precio cobrado ni embebido: se valoriza despues con el precio actual del plato
+                .append("unpriced", new Document("$sum", new Document("$cond", List.of(priced, 0, "$items.quantity"))))));
+    }
+
+    @Test
+    void unpricedLinesUseCurrentDishPriceBeforeRegroupingByKey() {
+        List<Document> pipeline = SalesPipelines.byPeriod("dishes", null, null, SalesPeriod.WEEK, ZoneId.of("America/Lima"));
+
+        assertThat(((Document) pipeline.get(1).get("$group")).get("_id")).isEqualTo(new Document("key",
+                new Document("$dateToString", new Document("format", "%G-W%V")
+                        .append("date", new Document("$toDate", "$_id"))
+                        .append("timezone", "America/Lima")))
+                .append("dish", "$items.dish._id"));
+        assertThat(pipeline.subList(2, 6)).containsExactly(
+                new Document("$set", new Document("fallbackDish",
+                        new Document("$cond", List.of(new Document("$gt", List.of("$unpriced", 0)), "$_id.dish", "$$REMOVE")))),
+                new Document("$lookup", new Document("from", "dishes").append("localField", "fallbackDish")
+                        .append("foreignField", "_id").append("as", "dish")),
+                new Document("$set", new Document("revenue", new Document("$add", List.of("$revenue",
+                        new Document("$multiply", List.of("$unpriced",
+                                new Document("$ifNull", List.of(new Document("$arrayElemAt", List.of("$dish.price", 0)), 0)))))))),
+                new Document("$group", new Document("_id", "$_id.key")
+                        .append("invoices", new Document("$sum", "$invoices"))
+                        .append("quantity", new Document("$sum", "$quantity"))
+                        .append("revenue", new Document("$sum", "$revenue"))));
+    }
+
+    @Test
+    void withoutWindowThereIsNoMatch() {
+        List<Document> pipeline = SalesPipelines.byDish("dishes", null, null, 10);
+
+        assertThat(pipeline.get(0)).containsKey("$unwind");
+        assertThat(pipeline).anySatisfy(stage -> assertThat(stage).isEqualTo(new Document("$limit", 10)));
+    }
+}
@@ -0,0 +1,282 @@
+package com.mitocode.service.impl;
+
+import com.mitocode.model.Invoice;
+import com.mitocode.model.SalesContribution;
+import com.mitocode.model.SalesContribution.DishLine;
+import com.mitocode.model.SalesRollup;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SalesRollupServiceImplTests {
+
+    private static final ObjectId CLIENT = new ObjectId();
+    private static final ObjectId DISH = new ObjectId();
+
+    //Colecciones en memoria detras del template mockeado; el upsert respeta el filtro ops != marca como Mongo
+    private final Map<String, Document> invoices = new LinkedHashMap<>();
+    private final Map<String, SalesContribution> contributions = new LinkedHashMap<>();
+    private final Map<String, Document> rollups = new LinkedHashMap<>();
+    //el siguiente $inc falla como si el proceso cayera entre escrituras
+    private final AtomicBoolean failNextIncrement = new AtomicBoolean();
+
+    private ReactiveMongoTemplate template;
+    private SalesRollupServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        template = mock(ReactiveMongoTemplate.class);
+        service = service(template);
+        when(template.getCollectionName(Invoice.class)).thenReturn("invoices");
+        when(template.find(any(Query.class), eq(Document.class), eq("invoices"))).thenAnswer(call -> {
+            Document filter = call.<Query>getArgument(0).getQueryObject();
+            return Flux.fromIterable(List.copyOf(invoices.values()))
+                    .filter(invoice -> !filter.containsKey("_id") || in(filter, "_id", invoice.get("_id")));
+        });
+        when(template.find(any(Query.class), eq(SalesContribution.class))).thenAnswer(call -> {
+            Document filter = call.<Query>getArgument(0).getQueryObject();
+            return Flux.fromIterable(copies(contributions.values()))
+                    .filter(c -> filter.containsKey("pending") ? c.getPending() != null : in(filter, "_id", c.getId()));
+        });
+        when(template.findAll(SalesContribution.class)).thenAnswer(call -> Flux.fromIterable(copies(contributions.values())));
+        when(template.save(any(SalesContribution.class))).thenAnswer(call -> {
+            SalesContribution c = call.getArgument(0);
+            contributions.put(c.getId(), copy(c));
+            return Mono.just(c);
+        });
+        when(template.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(SalesContribution.class))).thenAnswer(call -> {
+            SalesContribution c = contributions.get(idOf(call.getArgument(0)));
+            c.setPending(null);
+            c.setIncrements(null);
+            return Mono.just(UpdateResult.acknowledged(1, 1L, null));
+        });
+        when(template.remove(any(Query.class), eq(SalesContribution.class))).thenAnswer(call -> {
+            contributions.remove(idOf(call.getArgument(0)));
+            return Mono.just(DeleteResult.acknowledged(1));
+        });
+        when(template.upsert(any(Query.class), any(UpdateDefinition.class), eq(SalesRollup.class))).thenAnswer(call -> upsert(
+                call.getArgument(0), call.getArgument(1)));
+        when(template.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(SalesRollup.class))).thenAnswer(call -> {
+            Document pull = (Document) call.<UpdateDefinition>getArgument(1).getUpdateObject().get("$pull");
+            Document rollup = rollups.get(idOf(call.getArgument(0)));
+            if (rollup != null) {
+                ops(rollup).remove(pull.getString("ops"));
+            }
+            return Mono.just(UpdateResult.acknowledged(1, 1L, null));
+        });
+        when(template.remove(any(Query.class), eq(SalesRollup.class))).thenAnswer(call -> {
+            String id = idOf(call.getArgument(0));
+            Document rollup = rollups.get(id);
+            if (rollup != null && rollup.getLong("invoices") <= 0) {
+                rollups.remove(id);
+            }
+            return Mono.just(DeleteResult.acknowledged(1));
+        });
+    }
+
+    @Test
+    void contributionUsesPriceSnapshotAndMergesDishLines() {
+        ObjectId id = new ObjectId(Date.from(Instant.parse("2024-03-15T03:00:00Z")));
+        ObjectId client = new ObjectId();
+        ObjectId dish = new ObjectId();
+        Document invoice = new Document("_id", id)
+                .append("client", new Document("_id", client))
+                .append("items", List.of(
+                        new Document("quantity", 2).append("dish", new Document("_id", dish)).append("price", 10.0),
+                        new Document("quantity", 1).append("dish", new Document("_id", dish)).append("price", 12.0)));
+
+        SalesContribution contribution = service.contribution(invoice);
+
+        assertThat(contribution.getId()).isEqualTo(id.toHexString());
+        assertThat(contribution.getClient()).isEqualTo(client.toHexString());
+        //la fecha del _id en la zona configurada (Lima, UTC-5)
+        assertThat(contribution.getDay()).isEqualTo("2024-03-14");
+        assertThat(contribution.getQuantity()).isEqualTo(3);
+        assertThat(contribution.getRevenue()).isEqualTo(32.0);
+        assertThat(contribution.getDishes()).containsExactly(new DishLine(dish.toHexString(), 3, 32.0));
+    }
+
+    @Test
+    void legacyInvoicesUseEmbeddedDishPrice() {
+        ObjectId dish = new ObjectId();
+        Document invoice = new Document("_id", new ObjectId())
+                .append("items", List.of(new Document("quantity", 4)
+                        .append("dish", new Document("_id", dish).append("name", "Ceviche").append("price", 25.0))));
+
+        SalesContribution contribution = service.contribution(invoice);
+
+        assertThat(contribution.getClient()).isNull();
+        assertThat(contribution.getRevenue()).isEqualTo(100.0);
+    }
+
+    @Test
+    void reconcileAddsNewInvoicesToEveryRollup() {
+        ObjectId a = invoice(2, 10.0);
+        invoice(1, 12.0);
+
+        StepVerifier.create(service.reconcile()).expectNext(2L).verifyComplete();
+
+        assertRollup("dish:" + DISH.toHexString(), 2, 3, 32.0);
+        assertRollup("client:" + CLIENT.toHexString(), 2, 3, 32.0);
+        assertThat(contributions.get(a.toHexString()).getPending()).isNull();
+        assertThat(rollups.values()).allSatisfy(rollup -> assertThat(ops(rollup)).isEmpty());
+    }
+
+    @Test
+    void changedInvoiceAppliesOnlyTheDifference() {
+        ObjectId a = invoice(2, 10.0);
+        service.reconcile().block();
+
+        invoices.put(a.toHexString(), invoiceDocument(a, 5, 10.0));
+        StepVerifier.create(service.reconcile()).expectNext(1L).verifyComplete();
+        //una pasada sin cambios no toca los rollups
+        StepVerifier.create(service.reconcile()).expectNext(0L).verifyComplete();
+
+        assertRollup("dish:" + DISH.toHexString(), 1, 5, 50.0);
+    }
+
+    @Test
+    void interruptedApplyIsFinishedWithoutCountingTwice() {
+        invoice(2, 10.0);
+        //cae despues del $inc del rollup del cliente: la contribucion ya esta guardada con la marca
+        failNextIncrement.set(true);
+        StepVerifier.create(service.reconcile()).expectError(IllegalStateException.class).verify();
+        assertThat(contributions.values()).allSatisfy(c -> assertThat(c.getPending()).isNotNull());
+
+        StepVerifier.create(service.reconcile()).expectNext(0L).verifyComplete();
+
+        assertRollup("client:" + CLIENT.toHexString(), 1, 2, 20.0);
+        assertRollup("dish:" + DISH.toHexString(), 1, 2, 20.0);
+        assertThat(contributions.values()).allSatisfy(c -> assertThat(c.getPending()).isNull());
+    }
+
+    @Test
+    void deletedInvoiceIsSweptAndEmptyRollupsRemoved() {
+        ObjectId a = invoice(2, 10.0);
+        invoice(1, 12.0);
+        service.reconcile().block();
+
+        invoices.remove(a.toHexString());
+        StepVerifier.create(service.reconcile()).expectNext(1L).verifyComplete();
+
+        assertThat(contributions).doesNotContainKey(a.toHexString());
+        assertRollup("dish:" + DISH.toHexString(), 1, 1, 12.0);
+        //ningun rollup queda con cero facturas
+        assertThat(rollups.values()).allSatisfy(rollup -> assertThat(rollup.getLong("invoices")).isPositive());
+
+        invoices.clear();
+        service.reconcile().block();
+        assertThat(rollups).isEmpty();
+        assertThat(contributions).isEmpty();
+    }
+
+    private ObjectId invoice(int quantity, double price) {
+        ObjectId id = new ObjectId();
+        invoices.put(id.toHexString(), invoiceDocument(id, quantity, price));
+        return id;
+    }
+
+    private static Document invoiceDocument(ObjectId id, int quantity, double price) {
+        return new Document("_id", id)
+                .append("client", new Document("_id", CLIENT))
+                .append("items", List.of(new Document("quantity", quantity).append("dish", new Document("_id", DISH)).append("price", price)));
+    }
+
+    private void assertRollup(String id, long invoices, long quantity, double revenue) {
+        Document rollup = rollups.get(id);
+        assertThat(rollup).as(id).isNotNull();
+        assertThat(rollup.getLong("invoices")).isEqualTo(invoices);
+        assertThat(rollup.getLong("quantity")).isEqualTo(quantity);
+        assertThat(rollup.getDouble("revenue")).isEqualTo(revenue);
+    }
+
+    private Mono<UpdateResult> upsert(Query query, UpdateDefinition update) {
+        Document filter = query.getQueryObject();
+        String id = (String) filter.get("_id");
+        String op = filter.get("ops") instanceof Document ne ? ne.getString("$ne") : null;
+        Document rollup = rollups.get(id);
+        if (rollup != null && op != null && ops(rollup).contains(op)) {
+            //no coincide con el filtro: Mongo intenta insertar el mismo _id
+            return Mono.error(new DuplicateKeyException("E11000 duplicate key error: " + id));
+        }
+        if (rollup == null) {
+            rollup = new Document("_id", id).append("invoices", 0L).append("quantity", 0L).append("revenue", 0.0)
+                    .append("ops", new ArrayList<String>());
+            rollups.put(id, rollup);
+        }
+        Document inc = (Document) update.getUpdateObject().get("$inc");
+        rollup.put("invoices", rollup.getLong("invoices") + ((Number) inc.get("invoices")).longValue());
+        rollup.put("quantity", rollup.getLong("quantity") + ((Number) inc.get("quantity")).longValue());
+        rollup.put("revenue", rollup.getDouble("revenue") + ((Number) inc.get("revenue")).doubleValue());
+        if (op != null) {
+            ops(rollup).add(op);
+        }
+        //la escritura queda hecha y el proceso cae antes de la siguiente
+        if (failNextIncrement.getAndSet(false)) {
+            return Mono.error(new IllegalStateException("connection lost"));
+        }
+        return Mono.just(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> ops(Document rollup) {
+        return (List<String>) rollup.get("ops");
+    }
+
+    private static boolean in(Document filter, String field, Object value) {
+        Object condition = filter.get(field);
+        Collection<?> values = condition instanceof Document document ? (Collection<?>) document.get("$in") : List.of(condition);
+        return values.stream().anyMatch(candidate -> Objects.equals(hex(candidate), hex(value)));
+    }
+
+    private static String idOf(Query query) {
+        return hex(query.getQueryObject().get("_id"));
+    }
+
+    private static String hex(Object id) {
+        return id instanceof ObjectId objectId ? objectId.toHexString() : Objects.toString(id, null);
+    }
+
+    private static List<SalesContribution> copies(Collection<SalesContribution> stored) {
+        return stored.stream().map(SalesRollupServiceImplTests::copy).toList();
+    }
+
+    //lo leido de Mongo es una copia: el servicio no debe poder cambiar lo guardado sin escribirlo
+    private static SalesContribution copy(SalesContribution c) {
+        return new SalesContribution(c.getId(), c.getClient(), c.getDay(), c.getQuantity(), c.getRevenue(),
+                c.getDishes(), c.getPending(), c.getIncrements(), c.isDeleted());
+    }
+
+    private static SalesRollupServiceImpl service(ReactiveMongoTemplate template) {
+        when(template.getMongoDatabaseFactory()).thenReturn(mock(ReactiveMongoDatabaseFactory.class));
+        return new SalesRollupServiceImpl(template, new SimpleMeterRegistry(), "America/Lima", 500);
+    }
+}